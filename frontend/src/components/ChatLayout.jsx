@@ -31,7 +31,7 @@ const ChatLayout = () => {
     const [loadingMore, setLoadingMore] = useState(false);
     const [isTyping, setIsTyping] = useState(false);
     const [unreadCounts, setUnreadCounts] = useState({});
-    const [page, setPage] = useState(0);
+    const [historyCursor, setHistoryCursor] = useState(null);
     const [hasMoreMessages, setHasMoreMessages] = useState(true);
 
     const selectedUser = React.useMemo(() =>
@@ -46,11 +46,18 @@ const ChatLayout = () => {
     const messagesEndRef = useRef(null);
     const messageContainerRef = useRef(null);
     const selectedUserRef = useRef(null);
+    const messagesRef = useRef([]);
+    const syncCursorRef = useRef(null);
+    const connectedBeforeRef = useRef(false);
 
     useEffect(() => {
         selectedUserRef.current = selectedUser;
     }, [selectedUser]);
 
+    useEffect(() => {
+        messagesRef.current = messages;
+    }, [messages]);
+
     useEffect(() => {
         const fetchContacts = async () => {
             setLoadingContacts(true);
@@ -67,8 +74,35 @@ const ChatLayout = () => {
             setLoadingContacts(false);
         };
 
+        // After a reconnect, fetch what changed while we were away instead of reloading the conversation
+        const syncAfterReconnect = async () => {
+            const knownIds = messagesRef.current.map(m => m.id).filter(id => typeof id === 'number');
+            const since = syncCursorRef.current;
+            const lastMessageId = knownIds.length > 0 ? Math.max(...knownIds) : null;
+            if (!since && lastMessageId == null) return;
+            try {
+                const response = await messageService.syncMessages({ since, lastMessageId });
+                syncCursorRef.current = response.data.cursor;
+                const peer = selectedUserRef.current;
+                if (!peer) return;
+                const synced = response.data.messages.filter(m =>
+                    m.senderUsername === peer.username || m.recipientUsername === peer.username);
+                setMessages(prev => {
+                    const byId = new Map(synced.map(m => [m.id, m]));
+                    const merged = prev.map(msg => byId.has(msg.id) ? byId.get(msg.id) : msg);
+                    const known = new Set(prev.map(msg => msg.id));
+                    const added = synced.filter(m => !known.has(m.id)).sort((a, b) => a.id - b.id);
+                    return [...merged, ...added];
+                });
+            } catch (error) { console.error('Failed to sync messages:', error); }
+        };
+
         socketService.connect(() => {
             fetchContacts();
+            if (connectedBeforeRef.current) {
+                syncAfterReconnect();
+            }
+            connectedBeforeRef.current = true;
 
             socketService.subscribe(`/user/${currentUser.username}/queue/messages`, (newMessage) => {
                 setMessages(prev => {
@@ -89,9 +123,16 @@ const ChatLayout = () => {
                     return messages;
                 });
 
+                // Ephemeral messages are not stored, so there is nothing to acknowledge or mark read
+                if (newMessage.ephemeral) return;
+
+                if (newMessage.senderUsername !== currentUser.username && newMessage.status === 'SENT') {
+                    socketService.sendMessage('/app/chat.ack', { senderUsername: newMessage.senderUsername, messageIds: [newMessage.id] });
+                }
+
                 const currentChatUser = selectedUserRef.current;
                 if (currentChatUser && newMessage.senderUsername === currentChatUser.username) {
-                    socketService.sendMessage('/app/chat.markAsRead', { messageId: newMessage.id, status: 'READ' });
+                    socketService.sendMessage('/app/chat.markConversationRead', { peerUsername: newMessage.senderUsername, upToMessageId: newMessage.id });
                 }
             });
 
@@ -99,17 +140,28 @@ const ChatLayout = () => {
                 const currentChatUser = selectedUserRef.current;
                 if (statusUpdate.hasOwnProperty('messageId')) {
                     setMessages(prev => prev.map(msg => msg.id === statusUpdate.messageId ? { ...msg, status: statusUpdate.status } : msg));
+                } else if (statusUpdate.hasOwnProperty('messageIds')) {
+                    // Batched acks only ever move SENT forward; never overwrite READ with DELIVERED.
+                    const ids = new Set(statusUpdate.messageIds);
+                    setMessages(prev => prev.map(msg => ids.has(msg.id) && msg.status === 'SENT' ? { ...msg, status: statusUpdate.status } : msg));
+                } else if (statusUpdate.hasOwnProperty('upToMessageId')) {
+                    setMessages(prev => prev.map(msg =>
+                        msg.senderUsername === currentUser.username &&
+                        msg.recipientUsername === statusUpdate.peerUsername &&
+                        msg.id <= statusUpdate.upToMessageId
+                            ? { ...msg, status: statusUpdate.status } : msg));
                 } else if (currentChatUser && (statusUpdate.fromUsername || statusUpdate.senderUsername) === currentChatUser.username) {
                     setIsTyping(statusUpdate.typing || statusUpdate.isTyping);
                 }
             });
 
-            socketService.subscribe('/topic/presence', (presenceUpdate) => {
-                const newStatus = presenceUpdate.online !== undefined ? presenceUpdate.online : presenceUpdate.isOnline;
+            // Diffs for our contacts and anyone we watch; replies to /app/presence.watch arrive here too
+            socketService.subscribe(`/user/${currentUser.username}/queue/presence`, (diff) => {
+                const online = new Set(diff.online || []);
+                const offline = new Set(diff.offline || []);
                 const updateUserStatus = (userList) => userList.map(u => {
-                    if (u.username === presenceUpdate.username) {
-                        return { ...u, isOnline: newStatus };
-                    }
+                    if (online.has(u.username)) return { ...u, isOnline: true };
+                    if (offline.has(u.username)) return { ...u, isOnline: false };
                     return u;
                 });
 
@@ -129,7 +181,7 @@ const ChatLayout = () => {
         const debouncedSearch = setTimeout(async () => {
             try {
                 const response = await userService.searchUsers(searchQuery);
-                const normalizedResults = response.data.map(user => ({
+                const normalizedResults = response.data.users.map(user => ({
                     ...user,
                     isOnline: user.online
                 }));
@@ -151,17 +203,21 @@ const ChatLayout = () => {
         const fetchInitialMessages = async () => {
             setLoadingMessages(true);
             setMessages([]);
-            setPage(0);
+            setHistoryCursor(null);
             setHasMoreMessages(true);
 
             try {
-                const response = await messageService.getMessageHistory(currentUser.id, selectedUser.id, 0);
-                const newMessages = response.data.content.reverse();
+                const response = await messageService.scrollMessageHistory(currentUser.id, selectedUser.id);
+                const newMessages = response.data.messages.reverse();
                 setMessages(newMessages);
-                setHasMoreMessages(!response.data.last);
+                setHistoryCursor(response.data.nextCursor);
+                setHasMoreMessages(response.data.hasMore);
 
                 const unread = newMessages.filter(m => m.recipientUsername === currentUser.username && m.status !== 'READ');
-                unread.forEach(msg => socketService.sendMessage('/app/chat.markAsRead', { messageId: msg.id, status: 'READ' }));
+                if (unread.length > 0) {
+                    const upToMessageId = Math.max(...unread.map(m => m.id));
+                    socketService.sendMessage('/app/chat.markConversationRead', { peerUsername: selectedUser.username, upToMessageId });
+                }
 
             } catch (error) {
                 console.error('Failed to fetch message history:', error);
@@ -177,13 +233,12 @@ const ChatLayout = () => {
         if (!selectedUser || !hasMoreMessages || loadingMore) return;
 
         setLoadingMore(true);
-        const nextPage = page + 1;
         try {
-            const response = await messageService.getMessageHistory(currentUser.id, selectedUser.id, nextPage);
-            const newMessages = response.data.content.reverse();
+            const response = await messageService.scrollMessageHistory(currentUser.id, selectedUser.id, historyCursor);
+            const newMessages = response.data.messages.reverse();
             setMessages(prev => [...newMessages, ...prev]);
-            setPage(nextPage);
-            setHasMoreMessages(!response.data.last);
+            setHistoryCursor(response.data.nextCursor);
+            setHasMoreMessages(response.data.hasMore);
         } catch (error) {
             console.error('Failed to fetch more messages:', error);
         } finally {
@@ -204,6 +259,8 @@ const ChatLayout = () => {
 
         if (!contacts.some(c => c.id === user.id)) {
             setContacts(prev => [user, ...prev]);
+            // Not a conversation peer yet, so the server does not send us this user's presence unasked
+            socketService.sendMessage('/app/presence.watch', { usernames: [user.username] });
         }
 
         setSelectedUserId(user.id);
@@ -9,6 +9,7 @@ const MessageInput = ({ onSendMessage, onTyping, onFileSelect }) => {
     const [message, setMessage] = useState('');
     const typingTimeoutRef = useRef(null);
     const isTypingRef = useRef(false);
+    const lastTypingSentRef = useRef(0);
     const fileInputRef = useRef(null);
 
     const handleInputChange = (e) => {
@@ -19,8 +20,11 @@ const MessageInput = ({ onSendMessage, onTyping, onFileSelect }) => {
             clearTimeout(typingTimeoutRef.current);
         }
 
-        if (value && !isTypingRef.current) {
+        // Refresh the typing state every couple of seconds; the server coalesces the repeats
+        // and reports the sender as stopped if the refreshes stop arriving.
+        if (value && (!isTypingRef.current || Date.now() - lastTypingSentRef.current > 2000)) {
             isTypingRef.current = true;
+            lastTypingSentRef.current = Date.now();
             onTyping(true);
         }
 
@@ -22,13 +22,41 @@ export const getMessageHistory = (userId1, userId2, page = 0, size = 50) => {
     return apiClient.get(`/messages/${userId1}/${userId2}?page=${page}&size=${size}`);
 };
 
+// Messages created or changed since the cursor from the previous sync (or since lastMessageId)
+export const syncMessages = ({ since, lastMessageId }) => {
+    const params = since ? { since } : { lastMessageId };
+    return apiClient.get('/messages/sync', { params });
+};
+
+// Keyset history: newest page first, then pass the returned nextCursor as `before`
+export const scrollMessageHistory = (userId1, userId2, before = null, size = 50) => {
+    const params = before ? { before, size } : { size };
+    return apiClient.get(`/messages/${userId1}/${userId2}/scroll`, { params });
+};
+
+// Unread counts of every conversation; updates arrive on /user/queue/unread
+export const getUnreadCounts = () => {
+    return apiClient.get('/messages/unread');
+};
+
+// Full-text search over the current user's messages, optionally with one peer only
+export const searchMessages = (q, peerId = null, page = 0, size = 20) => {
+    const params = { q, page, size };
+    if (peerId != null) params.peerId = peerId;
+    return apiClient.get('/messages/search', { params });
+};
+
 export const softDeleteMessage = (messageId) => {
     return apiClient.delete(`/messages/${messageId}`);
 };
 
 const messageService = {
     getMessageHistory,
+    getUnreadCounts,
+    scrollMessageHistory,
+    searchMessages,
     softDeleteMessage,
+    syncMessages,
 };
 
 export default messageService;
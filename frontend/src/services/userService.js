@@ -36,8 +36,9 @@ const getContactsWithOnlineStatus = () => {
     return apiClient.get('/users/contacts');
 };
 
-const searchUsers = (query) => {
-    return apiClient.get(`/users/search?username=${query}`);
+// Resolves to { users, hasMore, nextCursor }; pass nextCursor back for the following page.
+const searchUsers = (query, limit = 20, cursor = null) => {
+    return apiClient.get('/users/search', { params: { username: query, limit, ...(cursor ? { cursor } : {}) } });
 };
 
 const userService = {
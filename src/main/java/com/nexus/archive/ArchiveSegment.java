@@ -0,0 +1,132 @@
+package com.nexus.archive;
+
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.MessageType;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A read-only, memory-mapped archive segment.
+ * <p>
+ * Layout: a header ({@link #MAGIC}, {@link #VERSION}), then deflate-compressed blocks of up to
+ * {@link ArchiveSegmentWriter#BLOCK_MESSAGES} messages of one conversation in ID order, then a
+ * footer listing every block (conversation, ID and time range, offset and sizes), then the
+ * footer's offset and {@link #MAGIC} again. Segments are written once and never modified.
+ */
+class ArchiveSegment {
+
+    static final int MAGIC = 0x4E584152; // "NXAR"
+    static final int VERSION = 1;
+    static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final String name;
+    private final MappedByteBuffer buffer;
+    private final List<Block> blocks;
+
+    private ArchiveSegment(String name, MappedByteBuffer buffer, List<Block> blocks) {
+        this.name = name;
+        this.buffer = buffer;
+        this.blocks = blocks;
+    }
+
+    static ArchiveSegment open(String name, Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int size = buffer.capacity();
+        if (size < 2 * Integer.BYTES + TRAILER_BYTES || buffer.getInt(0) != MAGIC
+                || buffer.getInt(size - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a complete archive segment: " + file);
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported archive segment version in " + file);
+        }
+        ArchiveSegment segment = new ArchiveSegment(name, buffer, new ArrayList<>());
+        int footerOffset = (int) buffer.getLong(size - TRAILER_BYTES);
+        ByteBuffer footer = buffer.slice(footerOffset, size - TRAILER_BYTES - footerOffset);
+        int count = footer.getInt();
+        for (int i = 0; i < count; i++) {
+            segment.blocks.add(new Block(segment, footer.getLong(), footer.getLong(), footer.getLong(), footer.getLong(),
+                    footer.getLong(), footer.getLong(), footer.getInt(), footer.getInt(), footer.getInt(), footer.getInt()));
+        }
+        return segment;
+    }
+
+    String name() {
+        return name;
+    }
+
+    List<Block> blocks() {
+        return blocks;
+    }
+
+    /**
+     * The block's messages in ID order.
+     */
+    List<ChatMessageDto> read(Block block) {
+        byte[] raw = new byte[block.rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice(block.offset(), block.length()));
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt block at " + block.offset() + " in archive segment " + name, e);
+        } finally {
+            inflater.end();
+        }
+
+        List<ChatMessageDto> messages = new ArrayList<>(block.count());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            for (int i = 0; i < block.count(); i++) {
+                ChatMessageDto message = new ChatMessageDto();
+                message.setId(in.readLong());
+                message.setSenderUsername(in.readUTF());
+                message.setRecipientUsername(in.readUTF());
+                int contentLength = in.readInt();
+                if (contentLength >= 0) {
+                    message.setContent(new String(in.readNBytes(contentLength), StandardCharsets.UTF_8));
+                }
+                String type = in.readUTF();
+                message.setType(type.isEmpty() ? null : MessageType.valueOf(type));
+                String status = in.readUTF();
+                message.setStatus(status.isEmpty() ? null : MessageStatus.valueOf(status));
+                message.setTimestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+                messages.add(message);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt block at " + block.offset() + " in archive segment " + name, e);
+        }
+        return messages;
+    }
+
+    /**
+     * One compressed run of a conversation's messages; times are epoch milliseconds (UTC).
+     */
+    record Block(ArchiveSegment segment, long lowId, long highId, long firstId, long lastId,
+                 long firstTimestamp, long lastTimestamp, int offset, int length, int rawLength, int count) {
+
+        List<ChatMessageDto> read() {
+            return segment.read(this);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.nexus.archive;
+
+import com.nexus.model.dto.ChatMessageDto;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one {@link ArchiveSegment} file: {@link #append} compresses a conversation's messages
+ * into blocks, {@link #finish} writes the footer and forces everything to disk.
+ */
+class ArchiveSegmentWriter implements Closeable {
+
+    static final int BLOCK_MESSAGES = 128;
+
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private final List<long[]> footer = new ArrayList<>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private final byte[] chunk = new byte[16 * 1024];
+    private long messages;
+
+    ArchiveSegmentWriter(Path path) throws IOException {
+        this.file = new FileOutputStream(path.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(file, 256 * 1024));
+        out.writeInt(ArchiveSegment.MAGIC);
+        out.writeInt(ArchiveSegment.VERSION);
+    }
+
+    /**
+     * Appends messages of one conversation, in ID order.
+     */
+    void append(long lowId, long highId, List<ChatMessageDto> conversation) throws IOException {
+        for (int from = 0; from < conversation.size(); from += BLOCK_MESSAGES) {
+            List<ChatMessageDto> block = conversation.subList(from, Math.min(from + BLOCK_MESSAGES, conversation.size()));
+            byte[] raw = encode(block);
+            int offset = out.size();
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            ChatMessageDto first = block.get(0);
+            ChatMessageDto last = block.get(block.size() - 1);
+            footer.add(new long[]{lowId, highId, first.getId(), last.getId(), epochMillis(first), epochMillis(last),
+                    offset, out.size() - offset, raw.length, block.size()});
+            messages += block.size();
+        }
+    }
+
+    long size() {
+        return out.size();
+    }
+
+    long messages() {
+        return messages;
+    }
+
+    void finish() throws IOException {
+        long footerOffset = out.size();
+        out.writeInt(footer.size());
+        for (long[] entry : footer) {
+            for (int i = 0; i < 6; i++) {
+                out.writeLong(entry[i]);
+            }
+            for (int i = 6; i < entry.length; i++) {
+                out.writeInt((int) entry[i]);
+            }
+        }
+        out.writeLong(footerOffset);
+        out.writeInt(ArchiveSegment.MAGIC);
+        out.flush();
+        file.getChannel().force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+    }
+
+    private static byte[] encode(List<ChatMessageDto> block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.size() * 128);
+        DataOutputStream data = new DataOutputStream(bytes);
+        for (ChatMessageDto message : block) {
+            data.writeLong(message.getId());
+            data.writeUTF(message.getSenderUsername());
+            data.writeUTF(message.getRecipientUsername());
+            if (message.getContent() == null) {
+                data.writeInt(-1);
+            } else {
+                byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+                data.writeInt(content.length);
+                data.write(content);
+            }
+            data.writeUTF(message.getType() != null ? message.getType().name() : "");
+            data.writeUTF(message.getStatus() != null ? message.getStatus().name() : "");
+            data.writeLong(message.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            data.writeInt(message.getTimestamp().getNano());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long epochMillis(ChatMessageDto message) {
+        return message.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
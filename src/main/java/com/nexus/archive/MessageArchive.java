@@ -0,0 +1,355 @@
+package com.nexus.archive;
+
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.service.TransactionCallbacks;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read side of the cold message archive: the segment files written by {@link MessageArchiver},
+ * memory-mapped, with an in-memory index of their blocks by conversation. History reads fall
+ * through to it once they pass the oldest message still in the database.
+ * <p>
+ * Segments are picked up at startup and every {@code scan-interval-ms}, so nodes sharing the
+ * archive directory see segments written by another node.
+ * <p>
+ * Segments are never rewritten. An archived message that is deleted, or that changed in the table
+ * while the archiver was moving it, gets a row in {@code archive_tombstones} instead, and reads
+ * skip it. Tombstones are kept in memory and reloaded with every scan.
+ */
+@Component
+@Slf4j
+public class MessageArchive implements SmartLifecycle {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String PENDING_SUFFIX = ".pending";
+
+    private static final Comparator<ArchiveSegment.Block> NEWEST_FIRST =
+            Comparator.comparingLong(ArchiveSegment.Block::lastId).reversed();
+    private static final Comparator<ArchiveSegment.Block> OLDEST_FIRST =
+            Comparator.comparingLong(ArchiveSegment.Block::firstId);
+
+    private static final String TOMBSTONE_SQL = "INSERT INTO archive_tombstones (message_id, conversation_low_id, conversation_high_id) "
+            + "SELECT CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT) "
+            + "WHERE NOT EXISTS (SELECT 1 FROM archive_tombstones WHERE message_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path dir;
+    private final Map<ConversationKey, ConversationBlocks> conversations = new ConcurrentHashMap<>();
+    private final Map<ConversationKey, Set<Long>> tombstones = new ConcurrentHashMap<>();
+    private final Set<String> segments = ConcurrentHashMap.newKeySet();
+    private final Timer readTime;
+
+    private volatile boolean running;
+
+    public MessageArchive(JdbcTemplate jdbcTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.archive.dir:./data/archive}") String dir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dir = Path.of(dir);
+        this.readTime = Timer.builder("message.archive.read")
+                .description("Reads of archived conversation history")
+                .register(meterRegistry);
+        Gauge.builder("message.archive.segments", segments, Set::size)
+                .description("Archive segments mapped by this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Number of archived messages of the conversation.
+     */
+    public long count(Long userA, Long userB) {
+        ConversationKey key = ConversationKey.of(userA, userB);
+        ConversationBlocks blocks = conversations.get(key);
+        return blocks != null ? Math.max(0, blocks.count - tombstonesOf(key).size()) : 0;
+    }
+
+    /**
+     * Whether anything of the conversation is archived with an ID above {@code afterId}; it may
+     * have been deleted since.
+     */
+    public boolean hasAfter(Long userA, Long userB, long afterId) {
+        ConversationBlocks blocks = conversations.get(ConversationKey.of(userA, userB));
+        return blocks != null && blocks.maxId > afterId;
+    }
+
+    /**
+     * Up to {@code limit} archived messages of the conversation older than {@code beforeId}, newest first.
+     */
+    public List<ChatMessageDto> findBefore(Long userA, Long userB, long beforeId, int limit) {
+        return newest(userA, userB, beforeId, 0, limit);
+    }
+
+    /**
+     * Archived messages of the conversation newest first, skipping the {@code skip} newest; for
+     * offset pages that continue past the database.
+     */
+    public List<ChatMessageDto> findNewest(Long userA, Long userB, int skip, int limit) {
+        return newest(userA, userB, Long.MAX_VALUE, skip, limit);
+    }
+
+    /**
+     * Up to {@code limit} archived messages of the conversation newer than {@code afterId}, oldest first.
+     */
+    public List<ChatMessageDto> findAfter(Long userA, Long userB, long afterId, int limit) {
+        ConversationKey key = ConversationKey.of(userA, userB);
+        ConversationBlocks blocks = conversations.get(key);
+        if (blocks == null || limit <= 0) {
+            return List.of();
+        }
+        Set<Long> dead = tombstonesOf(key);
+        return timed(() -> {
+            TreeMap<Long, ChatMessageDto> found = new TreeMap<>();
+            for (ArchiveSegment.Block block : blocks.oldestFirst) {
+                if (block.lastId() <= afterId) {
+                    continue;
+                }
+                // Blocks are ordered by first ID: none of the rest can hold anything older than what we kept.
+                if (found.size() >= limit && block.firstId() > found.lastKey()) {
+                    break;
+                }
+                for (ChatMessageDto message : block.read()) {
+                    if (message.getId() > afterId && !dead.contains(message.getId())) {
+                        found.put(message.getId(), message);
+                    }
+                }
+                while (found.size() > limit) {
+                    found.pollLastEntry();
+                }
+            }
+            return new ArrayList<>(found.values());
+        });
+    }
+
+    /**
+     * The archived message with this ID, unless it is not archived or has been deleted. Looks at
+     * every conversation's blocks, so it is meant for the rare delete of an archived message.
+     */
+    public Optional<ArchivedMessage> find(long messageId) {
+        for (Map.Entry<ConversationKey, ConversationBlocks> entry : conversations.entrySet()) {
+            if (tombstonesOf(entry.getKey()).contains(messageId)) {
+                continue;
+            }
+            for (ArchiveSegment.Block block : entry.getValue().oldestFirst) {
+                if (block.firstId() > messageId) {
+                    break;
+                }
+                if (block.lastId() < messageId) {
+                    continue;
+                }
+                for (ChatMessageDto message : block.read()) {
+                    if (message.getId() == messageId) {
+                        return Optional.of(new ArchivedMessage(block.lowId(), block.highId(), message));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Hides archived messages of one conversation from now on. The tombstones are written in the
+     * caller's transaction and take effect here once it commits; other nodes pick them up with
+     * their next scan.
+     */
+    public void tombstone(long lowId, long highId, Collection<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(TOMBSTONE_SQL, messageIds.stream()
+                .map(id -> new Object[]{id, lowId, highId, id})
+                .toList());
+        List<Long> ids = List.copyOf(messageIds);
+        TransactionCallbacks.afterCommit(() -> tombstonesOf(new ConversationKey(lowId, highId), true).addAll(ids));
+    }
+
+    /**
+     * Maps segment files that are not mapped yet and reloads the tombstones.
+     */
+    @Scheduled(fixedDelayString = "${app.archive.scan-interval-ms:60000}")
+    public void scan() {
+        if (!running) {
+            return;
+        }
+        loadTombstones();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*{" + SEGMENT_SUFFIX + "," + PENDING_SUFFIX + "}")) {
+            for (Path file : files) {
+                add(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to scan the message archive in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * Maps a segment and adds it to the index, unless it is mapped already (possibly under its
+     * other suffix).
+     */
+    void add(Path file) throws IOException {
+        String name = segmentName(file);
+        if (segments.contains(name)) {
+            return;
+        }
+        ArchiveSegment segment = ArchiveSegment.open(name, file);
+        if (!segments.add(name)) {
+            return;
+        }
+        Map<ConversationKey, List<ArchiveSegment.Block>> byConversation = new TreeMap<>(
+                Comparator.comparingLong(ConversationKey::lowId).thenComparingLong(ConversationKey::highId));
+        for (ArchiveSegment.Block block : segment.blocks()) {
+            byConversation.computeIfAbsent(new ConversationKey(block.lowId(), block.highId()), key -> new ArrayList<>()).add(block);
+        }
+        byConversation.forEach((key, blocks) ->
+                conversations.merge(key, ConversationBlocks.of(blocks), ConversationBlocks::merge));
+        log.info("Mapped archive segment {} ({} blocks)", name, segment.blocks().size());
+    }
+
+    Path dir() {
+        return dir;
+    }
+
+    private void loadTombstones() {
+        try {
+            jdbcTemplate.query("SELECT message_id, conversation_low_id, conversation_high_id FROM archive_tombstones",
+                    rs -> {
+                        tombstonesOf(new ConversationKey(rs.getLong("conversation_low_id"), rs.getLong("conversation_high_id")), true)
+                                .add(rs.getLong("message_id"));
+                    });
+        } catch (DataAccessException e) {
+            log.warn("Failed to load archive tombstones: {}", e.getMessage());
+        }
+    }
+
+    private Set<Long> tombstonesOf(ConversationKey key) {
+        return tombstonesOf(key, false);
+    }
+
+    private Set<Long> tombstonesOf(ConversationKey key, boolean create) {
+        return create ? tombstones.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+                : tombstones.getOrDefault(key, Set.of());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        scan();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Mapped before the archiver starts, which finishes pending segments.
+        return DEFAULT_PHASE - 1;
+    }
+
+    static String segmentName(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private List<ChatMessageDto> newest(Long userA, Long userB, long beforeId, int skip, int limit) {
+        ConversationKey key = ConversationKey.of(userA, userB);
+        ConversationBlocks blocks = conversations.get(key);
+        if (blocks == null || limit <= 0) {
+            return List.of();
+        }
+        Set<Long> dead = tombstonesOf(key);
+        int wanted = skip + limit;
+        return timed(() -> {
+            TreeMap<Long, ChatMessageDto> found = new TreeMap<>(Comparator.reverseOrder());
+            for (ArchiveSegment.Block block : blocks.newestFirst) {
+                if (block.firstId() >= beforeId) {
+                    continue;
+                }
+                // Blocks are ordered by last ID: none of the rest can hold anything newer than what we kept.
+                if (found.size() >= wanted && block.lastId() < found.lastKey()) {
+                    break;
+                }
+                for (ChatMessageDto message : block.read()) {
+                    if (message.getId() < beforeId && !dead.contains(message.getId())) {
+                        found.put(message.getId(), message);
+                    }
+                }
+                while (found.size() > wanted) {
+                    found.pollLastEntry();
+                }
+            }
+            List<ChatMessageDto> newest = new ArrayList<>(found.values());
+            return skip >= newest.size() ? List.of() : newest.subList(skip, newest.size());
+        });
+    }
+
+    private List<ChatMessageDto> timed(Supplier<List<ChatMessageDto>> read) {
+        return readTime.record(read);
+    }
+
+    /**
+     * An archived message with the conversation it belongs to.
+     */
+    public record ArchivedMessage(long lowId, long highId, ChatMessageDto message) {
+    }
+
+    private record ConversationKey(long lowId, long highId) {
+        static ConversationKey of(Long userA, Long userB) {
+            return new ConversationKey(Math.min(userA, userB), Math.max(userA, userB));
+        }
+    }
+
+    /**
+     * Every archived block of one conversation, sorted both ways. Immutable; replaced on merge.
+     */
+    private record ConversationBlocks(ArchiveSegment.Block[] newestFirst, ArchiveSegment.Block[] oldestFirst,
+                                      long count, long maxId) {
+
+        static ConversationBlocks of(List<ArchiveSegment.Block> blocks) {
+            ArchiveSegment.Block[] newest = blocks.toArray(ArchiveSegment.Block[]::new);
+            ArchiveSegment.Block[] oldest = newest.clone();
+            Arrays.sort(newest, NEWEST_FIRST);
+            Arrays.sort(oldest, OLDEST_FIRST);
+            long count = blocks.stream().mapToLong(ArchiveSegment.Block::count).sum();
+            return new ConversationBlocks(newest, oldest, count, newest[0].lastId());
+        }
+
+        ConversationBlocks merge(ConversationBlocks other) {
+            List<ArchiveSegment.Block> all = new ArrayList<>(Arrays.asList(newestFirst));
+            all.addAll(Arrays.asList(other.newestFirst));
+            return of(all);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.nexus.archive;
+
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.MessageType;
+import com.nexus.service.MessageSearchIndex;
+import com.nexus.service.RecentMessageCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves old messages out of the {@code messages} table into archive segments.
+ * <p>
+ * A run scans the table in ID order up to the first message newer than {@code age-days}. Read
+ * messages without an expiry are written to a new segment, grouped by conversation; soft-deleted
+ * ones are dropped. A conversation is archived only up to its first unread or expiring message, so
+ * whatever is archived stays older than every message of the conversation left in the table,
+ * which history reads rely on. A segment is written as {@code .tmp}, forced to disk and renamed to
+ * {@code .pending}; only then are its rows deleted from the database, after which it is renamed
+ * to {@code .seg}.
+ * <p>
+ * Rows are deleted only if they are unchanged since the scan read them. One that was deleted or
+ * edited in the meantime stays in the table and its copy in the segment is tombstoned (see
+ * {@link MessageArchive}); a deleted one is dropped by the next run, anything else archived again.
+ * A {@code .pending} segment found at startup may or may not have had its rows deleted: those
+ * still in the table are kept and tombstoned, so a crash at any point neither loses, duplicates
+ * nor brings back a message.
+ * <p>
+ * Only one node should run the job; other nodes read the segments through a shared directory.
+ */
+@Component
+@Slf4j
+public class MessageArchiver implements SmartLifecycle {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final String SCAN_SQL = "SELECT m.id, m.conversation_low_id, m.conversation_high_id, "
+            + "s.username AS sender_username, r.username AS recipient_username, m.content, m.type, m.status, "
+            + "m.timestamp, m.expires_at, m.deleted FROM messages m "
+            + "JOIN users s ON s.id = m.sender_id JOIN users r ON r.id = m.recipient_id "
+            + "WHERE m.id > ? ORDER BY m.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final MessageArchive archive;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int ageDays;
+    private final int chunkSize;
+    private final long segmentMaxBytes;
+    private final Counter archived;
+    private final Timer runTime;
+    private final AtomicBoolean archiving = new AtomicBoolean();
+
+    private volatile boolean running;
+
+    public MessageArchiver(JdbcTemplate jdbcTemplate,
+                           NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                           MessageArchive archive,
+                           RecentMessageCache recentMessageCache,
+                           MessageSearchIndex messageSearchIndex,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.archive.enabled:false}") boolean enabled,
+                           @Value("${app.archive.age-days:365}") int ageDays,
+                           @Value("${app.archive.chunk-size:5000}") int chunkSize,
+                           @Value("${app.archive.segment-max-bytes:268435456}") long segmentMaxBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.archive = archive;
+        this.recentMessageCache = recentMessageCache;
+        this.messageSearchIndex = messageSearchIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.ageDays = ageDays;
+        this.chunkSize = chunkSize;
+        // Segments are mapped as a single buffer.
+        this.segmentMaxBytes = Math.min(segmentMaxBytes, Integer.MAX_VALUE / 2);
+        this.archived = meterRegistry.counter("message.archive.archived");
+        this.runTime = meterRegistry.timer("message.archive.run");
+    }
+
+    /**
+     * Starts a run in the background unless one is already running. A run can take minutes; on
+     * the scheduler's threads it would hold up heartbeats and flushes.
+     */
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void archiveOldMessages() {
+        if (!enabled || !running || !archiving.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                archive(LocalDateTime.now().minusDays(ageDays));
+            } catch (RuntimeException e) {
+                log.error("Message archive run failed", e);
+            } finally {
+                archiving.set(false);
+            }
+        }, "messageArchive");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Archives read messages older than {@code cutoff}, each conversation up to its first unread or
+     * expiring one; returns how many were archived.
+     */
+    public synchronized long archive(LocalDateTime cutoff) {
+        long start = System.nanoTime();
+        long total = 0;
+        try {
+            Files.createDirectories(archive.dir());
+            LocalDateTime scanStartedAt = LocalDateTime.now();
+            long lastId = 0;
+            SegmentRun run = new SegmentRun(scanStartedAt);
+            Set<Conversation> stopped = new HashSet<>();
+            while (true) {
+                List<ScannedMessage> rows = jdbcTemplate.query(SCAN_SQL, MessageArchiver::scanned, lastId, chunkSize);
+                Map<Long, Map<Long, List<ChatMessageDto>>> byConversation = new TreeMap<>();
+                boolean reachedCutoff = false;
+                for (ScannedMessage row : rows) {
+                    if (!row.message().getTimestamp().isBefore(cutoff)) {
+                        reachedCutoff = true;
+                        break;
+                    }
+                    lastId = row.message().getId();
+                    Conversation conversation = new Conversation(row.lowId(), row.highId());
+                    if (stopped.contains(conversation)) {
+                        continue;
+                    }
+                    if (row.expiring() || !(row.message().isDeleted() || row.message().getStatus() == MessageStatus.READ)) {
+                        stopped.add(conversation);
+                        continue;
+                    }
+                    if (row.message().isDeleted()) {
+                        run.droppedIds.add(row.message().getId());
+                    } else {
+                        run.archivedIds.add(row.message().getId());
+                        byConversation.computeIfAbsent(row.lowId(), low -> new TreeMap<>())
+                                .computeIfAbsent(row.highId(), high -> new ArrayList<>())
+                                .add(row.message());
+                    }
+                }
+                for (Map.Entry<Long, Map<Long, List<ChatMessageDto>>> low : byConversation.entrySet()) {
+                    for (Map.Entry<Long, List<ChatMessageDto>> high : low.getValue().entrySet()) {
+                        run.writer().append(low.getKey(), high.getKey(), high.getValue());
+                    }
+                }
+                if (run.size() >= segmentMaxBytes) {
+                    total += run.complete();
+                    run = new SegmentRun(scanStartedAt);
+                }
+                if (reachedCutoff || rows.size() < chunkSize) {
+                    break;
+                }
+            }
+            total += run.complete();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the message archive in " + archive.dir(), e);
+        } finally {
+            runTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (total > 0) {
+            log.info("Archived {} messages older than {}", total, cutoff);
+        }
+        return total;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!Files.isDirectory(archive.dir())) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(archive.dir(),
+                "*{" + MessageArchive.PENDING_SUFFIX + "," + TMP_SUFFIX + "}")) {
+            for (Path file : files) {
+                if (file.toString().endsWith(TMP_SUFFIX)) {
+                    Files.delete(file);
+                    continue;
+                }
+                ArchiveSegment segment = ArchiveSegment.open(MessageArchive.segmentName(file), file);
+                List<Long> ids = new ArrayList<>();
+                segment.blocks().forEach(block -> block.read().forEach(message -> ids.add(message.getId())));
+                // Whether the rows were deleted before the crash is unknown; keep whatever is left
+                List<Long> removed = moveOut(ids, null);
+                seal(file);
+                log.info("Finished pending archive segment {} ({} of {} messages archived)", segment.name(), removed.size(), ids.size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover the message archive in " + archive.dir(), e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Deletes the rows of archived messages that are unchanged since {@code scanStartedAt} (none
+     * when it is null) and tombstones the archived copies of the rest still in the table, a batch
+     * per transaction; returns the IDs of the messages no longer in the table.
+     */
+    private List<Long> moveOut(List<Long> archivedIds, LocalDateTime scanStartedAt) {
+        List<Long> removed = new ArrayList<>();
+        for (int from = 0; from < archivedIds.size(); from += DELETE_BATCH_SIZE) {
+            List<Long> batch = archivedIds.subList(from, Math.min(from + DELETE_BATCH_SIZE, archivedIds.size()));
+            Set<Long> kept = transactionTemplate.execute(status -> {
+                if (scanStartedAt != null) {
+                    namedParameterJdbcTemplate.update("DELETE FROM messages WHERE id IN (:ids) "
+                            + "AND deleted = false AND updated_at <= :scanStartedAt",
+                            Map.of("ids", batch, "scanStartedAt", scanStartedAt));
+                }
+                Map<Conversation, List<Long>> left = new LinkedHashMap<>();
+                namedParameterJdbcTemplate.query("SELECT id, conversation_low_id, conversation_high_id FROM messages WHERE id IN (:ids)",
+                        Map.of("ids", batch), rs -> {
+                            left.computeIfAbsent(new Conversation(rs.getLong("conversation_low_id"), rs.getLong("conversation_high_id")),
+                                    conversation -> new ArrayList<>()).add(rs.getLong("id"));
+                        });
+                Set<Long> ids = new HashSet<>();
+                left.forEach((conversation, leftIds) -> {
+                    archive.tombstone(conversation.lowId(), conversation.highId(), leftIds);
+                    ids.addAll(leftIds);
+                });
+                return ids;
+            });
+            batch.stream().filter(id -> !kept.contains(id)).forEach(removed::add);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes soft-deleted rows the segment left out.
+     */
+    private void deleteDropped(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += DELETE_BATCH_SIZE) {
+            namedParameterJdbcTemplate.update("DELETE FROM messages WHERE id IN (:ids) AND deleted = true",
+                    Map.of("ids", ids.subList(from, Math.min(from + DELETE_BATCH_SIZE, ids.size()))));
+        }
+    }
+
+    private void seal(Path pending) throws IOException {
+        Files.move(pending, pending.resolveSibling(MessageArchive.segmentName(pending) + MessageArchive.SEGMENT_SUFFIX),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String nextSegmentName() throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(archive.dir(), "segment-*")) {
+            for (Path file : files) {
+                String name = MessageArchive.segmentName(file);
+                last = Math.max(last, Long.parseLong(name.substring("segment-".length())));
+            }
+        }
+        return String.format("segment-%08d", last + 1);
+    }
+
+    private static ScannedMessage scanned(ResultSet rs, int rowNum) throws SQLException {
+        String type = rs.getString("type");
+        String status = rs.getString("status");
+        ChatMessageDto message = new ChatMessageDto(rs.getLong("id"),
+                rs.getString("sender_username"),
+                rs.getString("recipient_username"),
+                rs.getString("content"),
+                type != null ? MessageType.valueOf(type) : null,
+                status != null ? MessageStatus.valueOf(status) : null,
+                rs.getTimestamp("timestamp").toLocalDateTime(),
+                rs.getBoolean("deleted"));
+        return new ScannedMessage(rs.getLong("conversation_low_id"), rs.getLong("conversation_high_id"),
+                rs.getTimestamp("expires_at") != null, message);
+    }
+
+    private record ScannedMessage(long lowId, long highId, boolean expiring, ChatMessageDto message) {
+    }
+
+    private record Conversation(long lowId, long highId) {
+    }
+
+    /**
+     * The segment being written, the IDs of the messages in it and of the soft-deleted rows it
+     * leaves out.
+     */
+    private final class SegmentRun {
+
+        private final LocalDateTime scanStartedAt;
+        private final List<Long> archivedIds = new ArrayList<>();
+        private final List<Long> droppedIds = new ArrayList<>();
+        private ArchiveSegmentWriter writer;
+        private Path tmp;
+
+        SegmentRun(LocalDateTime scanStartedAt) {
+            this.scanStartedAt = scanStartedAt;
+        }
+
+        ArchiveSegmentWriter writer() throws IOException {
+            if (writer == null) {
+                tmp = archive.dir().resolve(nextSegmentName() + TMP_SUFFIX);
+                writer = new ArchiveSegmentWriter(tmp);
+            }
+            return writer;
+        }
+
+        long size() {
+            return writer != null ? writer.size() : 0;
+        }
+
+        /**
+         * Makes the segment durable and visible, then deletes its rows; returns the messages archived.
+         */
+        long complete() throws IOException {
+            deleteDropped(droppedIds);
+            if (writer == null) {
+                return 0;
+            }
+            try (ArchiveSegmentWriter closing = writer) {
+                closing.finish();
+            }
+            Path pending = tmp.resolveSibling(MessageArchive.segmentName(tmp) + MessageArchive.PENDING_SUFFIX);
+            Files.move(tmp, pending, StandardCopyOption.ATOMIC_MOVE);
+            archive.add(pending);
+            List<Long> removed = moveOut(archivedIds, scanStartedAt);
+            recentMessageCache.invalidateAll();
+            // Search covers live messages only
+            messageSearchIndex.remove(removed);
+            seal(pending);
+            archived.increment(removed.size());
+            return removed.size();
+        }
+    }
+}
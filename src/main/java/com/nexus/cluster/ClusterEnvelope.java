@@ -0,0 +1,52 @@
+package com.nexus.cluster;
+
+import java.util.Set;
+
+/**
+ * Unit of cross-node traffic. {@code sentAtMillis} is the sender's wall clock and is used for
+ * hop latency, so it is only as accurate as the clock sync between nodes.
+ */
+public record ClusterEnvelope(Type type,
+                              String originNode,
+                              long sentAtMillis,
+                              String username,
+                              String destination,
+                              String contentType,
+                              boolean droppable,
+                              byte[] payload,
+                              Set<String> users) {
+
+    public enum Type {
+        /** A message for {@code username} on {@code destination}, e.g. {@code /queue/messages}. */
+        USER_MESSAGE,
+        /** {@code username} opened its first session on the origin node. */
+        USER_ONLINE,
+        /** {@code username} closed its last session on the origin node. */
+        USER_OFFLINE,
+        /** Every user connected to the origin node; sent periodically and to new nodes. */
+        SNAPSHOT,
+        /** The origin node is shutting down. */
+        NODE_LEFT
+    }
+
+    public static ClusterEnvelope userMessage(String originNode, String username, String destination,
+                                              String contentType, boolean droppable, byte[] payload) {
+        return new ClusterEnvelope(Type.USER_MESSAGE, originNode, System.currentTimeMillis(),
+                username, destination, contentType, droppable, payload, null);
+    }
+
+    public static ClusterEnvelope presence(Type type, String originNode, String username) {
+        return new ClusterEnvelope(type, originNode, System.currentTimeMillis(),
+                username, null, null, false, null, null);
+    }
+
+    public static ClusterEnvelope snapshot(String originNode, Set<String> users) {
+        return new ClusterEnvelope(Type.SNAPSHOT, originNode, System.currentTimeMillis(),
+                null, null, null, false, null, users);
+    }
+
+    public static ClusterEnvelope nodeLeft(String originNode) {
+        return new ClusterEnvelope(Type.NODE_LEFT, originNode, System.currentTimeMillis(),
+                null, null, null, false, null, null);
+    }
+}
@@ -0,0 +1,28 @@
+package com.nexus.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport between application nodes. Implementations only move envelopes; routing decisions
+ * (which node hosts which user) are made by {@link ClusterRouter}.
+ */
+public interface ClusterMessageBus {
+
+    /**
+     * Short name of the transport, used as a metrics tag.
+     */
+    String transport();
+
+    /**
+     * Sends an envelope to one node, or to every node (including the sender) when
+     * {@code targetNodeId} is {@code null}. Delivery is best-effort.
+     */
+    void publish(String targetNodeId, ClusterEnvelope envelope);
+
+    /**
+     * Starts delivering envelopes addressed to {@code nodeId} and all broadcasts to the handler.
+     */
+    void subscribe(String nodeId, Consumer<ClusterEnvelope> handler);
+
+    void unsubscribe(String nodeId);
+}
@@ -0,0 +1,289 @@
+package com.nexus.cluster;
+
+import com.nexus.service.OutboundMessageSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards user-destination messages to the nodes where the user is connected. It sits on the
+ * broker channel, so everything sent to {@code /user/{name}/...} (by {@link SimpMessagingTemplate}
+ * or {@link OutboundMessageSender}) is still resolved for local sessions and, in addition,
+ * published once to every other node that hosts a session for that user. The receiving node
+ * sends it through its own user destination resolution, marked so it is not forwarded again.
+ * <p>
+ * Nodes learn about each other's users from online/offline announcements and a periodic snapshot;
+ * a node that sends nothing for {@code node-timeout-ms} is forgotten. Whenever that may change
+ * whether a user is connected elsewhere, a {@link RemotePresenceChange} is published. Without a
+ * {@link ClusterMessageBus} bean ({@code app.cluster.transport: none}) this is a no-op.
+ */
+@Component
+@Slf4j
+public class ClusterRouter implements ChannelInterceptor, SmartLifecycle {
+
+    /** Set on messages that arrived from another node; holds the origin node ID. */
+    public static final String ORIGIN_HEADER = "nexusClusterOrigin";
+
+    /**
+     * Published when another node announces, or stops announcing, a user; check
+     * {@link #hasRemoteSessions} for the current state.
+     */
+    public record RemotePresenceChange(String username) {
+    }
+
+    private final ClusterMessageBus bus;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+    private final long nodeTimeoutNanos;
+    private final ClusterUserDirectory directory = new ClusterUserDirectory();
+
+    private final Map<ClusterEnvelope.Type, Timer> hopLatency = new EnumMap<>(ClusterEnvelope.Type.class);
+    private final Timer publishTime;
+    private final Counter forwarded;
+    private final Counter publishFailures;
+
+    private volatile boolean running;
+
+    public ClusterRouter(ObjectProvider<ClusterMessageBus> bus,
+                         @Lazy SimpMessagingTemplate messagingTemplate,
+                         ApplicationEventPublisher eventPublisher,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.cluster.node-id:}") String nodeId,
+                         @Value("${app.cluster.node-timeout-ms:15000}") long nodeTimeoutMs) {
+        this.bus = bus.getIfAvailable();
+        this.messagingTemplate = messagingTemplate;
+        this.eventPublisher = eventPublisher;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        this.nodeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(nodeTimeoutMs);
+
+        String transport = this.bus != null ? this.bus.transport() : "none";
+        for (ClusterEnvelope.Type type : ClusterEnvelope.Type.values()) {
+            hopLatency.put(type, Timer.builder("cluster.bus.hop")
+                    .description("Time from publish on the origin node to receipt on this node")
+                    .tag("transport", transport)
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        this.publishTime = meterRegistry.timer("cluster.bus.publish", "transport", transport);
+        this.forwarded = meterRegistry.counter("cluster.bus.forwarded", "transport", transport);
+        this.publishFailures = meterRegistry.counter("cluster.bus.publish.failures", "transport", transport);
+        Gauge.builder("cluster.nodes", directory, ClusterUserDirectory::remoteNodeCount)
+                .description("Other nodes currently known to this node")
+                .register(meterRegistry);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Whether another node has announced a session for this user.
+     */
+    public boolean hasRemoteSessions(String username) {
+        return running && !directory.nodesFor(username).isEmpty();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!running) {
+            return message;
+        }
+        MessageHeaders headers = message.getHeaders();
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String prefix = messagingTemplate.getUserDestinationPrefix();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(ORIGIN_HEADER)
+                // Targeted at one session, which is connected here
+                || SimpMessageHeaderAccessor.getSessionId(headers) != null
+                || destination == null
+                || !destination.startsWith(prefix)) {
+            return message;
+        }
+
+        String userAndPath = destination.substring(prefix.length());
+        int slash = userAndPath.indexOf('/');
+        if (slash <= 0) {
+            return message;
+        }
+        String username = StringUtils.replace(userAndPath.substring(0, slash), "%2F", "/");
+        List<String> nodes = directory.nodesFor(username);
+        byte[] payload = toBytes(message.getPayload());
+        if (nodes.isEmpty() || payload == null) {
+            return message;
+        }
+
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        ClusterEnvelope envelope = ClusterEnvelope.userMessage(nodeId, username, userAndPath.substring(slash),
+                contentType != null ? contentType.toString() : null,
+                Boolean.TRUE.equals(headers.get(OutboundMessageSender.DROPPABLE_HEADER)),
+                payload);
+        for (String node : nodes) {
+            publish(node, envelope);
+            forwarded.increment();
+        }
+        return message;
+    }
+
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user != null && sessionId != null && directory.addLocalSession(user.getName(), sessionId) && running) {
+            publish(null, ClusterEnvelope.presence(ClusterEnvelope.Type.USER_ONLINE, nodeId, user.getName()));
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user != null && directory.removeLocalSession(user.getName(), event.getSessionId()) && running) {
+            publish(null, ClusterEnvelope.presence(ClusterEnvelope.Type.USER_OFFLINE, nodeId, user.getName()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        if (!running) {
+            return;
+        }
+        publish(null, ClusterEnvelope.snapshot(nodeId, directory.localUsers()));
+        directory.expire(System.nanoTime() - nodeTimeoutNanos).forEach((node, users) -> {
+            log.warn("Cluster node {} stopped sending heartbeats and was removed", node);
+            publishPresenceChanges(users);
+        });
+    }
+
+    @Override
+    public void start() {
+        if (bus == null || running) {
+            return;
+        }
+        bus.subscribe(nodeId, this::receive);
+        running = true;
+        publish(null, ClusterEnvelope.snapshot(nodeId, directory.localUsers()));
+        log.info("Joined cluster as node {} over {}", nodeId, bus.transport());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        publish(null, ClusterEnvelope.nodeLeft(nodeId));
+        bus.unsubscribe(nodeId);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void receive(ClusterEnvelope envelope) {
+        if (nodeId.equals(envelope.originNode())) {
+            return;
+        }
+        hopLatency.get(envelope.type())
+                .record(Math.max(0, System.currentTimeMillis() - envelope.sentAtMillis()), TimeUnit.MILLISECONDS);
+
+        long now = System.nanoTime();
+        String origin = envelope.originNode();
+        switch (envelope.type()) {
+            case USER_MESSAGE -> deliverLocally(envelope);
+            case USER_ONLINE -> {
+                if (directory.userOnline(origin, envelope.username(), now)) {
+                    publish(origin, ClusterEnvelope.snapshot(nodeId, directory.localUsers()));
+                }
+                eventPublisher.publishEvent(new RemotePresenceChange(envelope.username()));
+            }
+            case USER_OFFLINE -> {
+                directory.userOffline(origin, envelope.username(), now);
+                eventPublisher.publishEvent(new RemotePresenceChange(envelope.username()));
+            }
+            case SNAPSHOT -> {
+                List<String> changed = new ArrayList<>();
+                // A node we did not know yet has just joined (or we have); tell it who is here.
+                if (directory.replace(origin, envelope.users() != null ? envelope.users() : Set.of(), now, changed)) {
+                    publish(origin, ClusterEnvelope.snapshot(nodeId, directory.localUsers()));
+                }
+                publishPresenceChanges(changed);
+            }
+            case NODE_LEFT -> publishPresenceChanges(directory.removeNode(origin));
+        }
+    }
+
+    private void publishPresenceChanges(Collection<String> usernames) {
+        usernames.forEach(username -> eventPublisher.publishEvent(new RemotePresenceChange(username)));
+    }
+
+    private void deliverLocally(ClusterEnvelope envelope) {
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload(envelope.payload())
+                .setHeader(ORIGIN_HEADER, envelope.originNode());
+        if (envelope.contentType() != null) {
+            builder.setHeader(MessageHeaders.CONTENT_TYPE, MimeType.valueOf(envelope.contentType()));
+        }
+        if (envelope.droppable()) {
+            builder.setHeader(OutboundMessageSender.DROPPABLE_HEADER, Boolean.TRUE);
+        }
+        String user = StringUtils.replace(envelope.username(), "/", "%2F");
+        messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + user + envelope.destination(), builder.build());
+    }
+
+    private void publish(String targetNodeId, ClusterEnvelope envelope) {
+        long start = System.nanoTime();
+        try {
+            bus.publish(targetNodeId, envelope);
+        } catch (RuntimeException e) {
+            // Local delivery must not depend on the bus; peers resync from the next snapshot.
+            publishFailures.increment();
+            log.warn("Failed to publish {} to {}: {}", envelope.type(),
+                    targetNodeId != null ? targetNodeId : "all nodes", e.getMessage());
+        } finally {
+            publishTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static byte[] toBytes(Object payload) {
+        if (payload instanceof byte[] bytes) {
+            return bytes;
+        }
+        if (payload instanceof String text) {
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,143 @@
+package com.nexus.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which users are connected where: session IDs for this node, usernames for every other node.
+ * Remote entries come from announcements and snapshots and expire when a node stops sending them.
+ */
+class ClusterUserDirectory {
+
+    private final Map<String, Set<String>> localSessions = new ConcurrentHashMap<>();
+    private final Map<String, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns {@code true} if this is the user's first session on this node.
+     */
+    boolean addLocalSession(String username, String sessionId) {
+        boolean[] first = {false};
+        localSessions.compute(username, (user, sessions) -> {
+            Set<String> updated = sessions != null ? sessions : new HashSet<>();
+            first[0] = updated.isEmpty();
+            updated.add(sessionId);
+            return updated;
+        });
+        return first[0];
+    }
+
+    /**
+     * Returns {@code true} if that was the user's last session on this node.
+     */
+    boolean removeLocalSession(String username, String sessionId) {
+        boolean[] last = {false};
+        localSessions.computeIfPresent(username, (user, sessions) -> {
+            if (!sessions.remove(sessionId) || !sessions.isEmpty()) {
+                return sessions;
+            }
+            last[0] = true;
+            return null;
+        });
+        return last[0];
+    }
+
+    Set<String> localUsers() {
+        return Set.copyOf(localSessions.keySet());
+    }
+
+    /**
+     * Returns {@code true} if the node was not known before.
+     */
+    boolean userOnline(String nodeId, String username, long nowNanos) {
+        boolean[] added = {false};
+        RemoteNode node = remoteNodes.computeIfAbsent(nodeId, id -> {
+            added[0] = true;
+            return new RemoteNode(nowNanos);
+        });
+        node.users.add(username);
+        node.lastSeenNanos = nowNanos;
+        return added[0];
+    }
+
+    void userOffline(String nodeId, String username, long nowNanos) {
+        RemoteNode node = remoteNodes.get(nodeId);
+        if (node != null) {
+            node.users.remove(username);
+            node.lastSeenNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Replaces a node's user list, adding the users that came or went to {@code changed}; returns
+     * {@code true} if the node was not known before.
+     */
+    boolean replace(String nodeId, Set<String> users, long nowNanos, Collection<String> changed) {
+        boolean[] added = {false};
+        RemoteNode node = remoteNodes.computeIfAbsent(nodeId, id -> {
+            added[0] = true;
+            return new RemoteNode(nowNanos);
+        });
+        for (String user : node.users) {
+            if (!users.contains(user) && node.users.remove(user)) {
+                changed.add(user);
+            }
+        }
+        for (String user : users) {
+            if (node.users.add(user)) {
+                changed.add(user);
+            }
+        }
+        node.lastSeenNanos = nowNanos;
+        return added[0];
+    }
+
+    /**
+     * Forgets a node; returns the users it had.
+     */
+    Set<String> removeNode(String nodeId) {
+        RemoteNode node = remoteNodes.remove(nodeId);
+        return node != null ? node.users : Set.of();
+    }
+
+    List<String> nodesFor(String username) {
+        List<String> nodes = new ArrayList<>(1);
+        remoteNodes.forEach((nodeId, node) -> {
+            if (node.users.contains(username)) {
+                nodes.add(nodeId);
+            }
+        });
+        return nodes;
+    }
+
+    /**
+     * Forgets the nodes not seen since then; returns each one's users.
+     */
+    Map<String, Set<String>> expire(long seenBeforeNanos) {
+        Map<String, Set<String>> expired = new HashMap<>();
+        remoteNodes.forEach((nodeId, node) -> {
+            if (node.lastSeenNanos - seenBeforeNanos < 0 && remoteNodes.remove(nodeId, node)) {
+                expired.put(nodeId, node.users);
+            }
+        });
+        return expired;
+    }
+
+    int remoteNodeCount() {
+        return remoteNodes.size();
+    }
+
+    private static final class RemoteNode {
+        private final Set<String> users = ConcurrentHashMap.newKeySet();
+        private volatile long lastSeenNanos;
+
+        private RemoteNode(long lastSeenNanos) {
+            this.lastSeenNanos = lastSeenNanos;
+        }
+    }
+}
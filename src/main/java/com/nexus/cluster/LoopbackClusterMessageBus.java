@@ -0,0 +1,48 @@
+package com.nexus.cluster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM bus: every instance with the same group name shares one set of subscribers, so several
+ * application contexts in one process behave like separate nodes. Delivery is synchronous on the
+ * publishing thread.
+ */
+public class LoopbackClusterMessageBus implements ClusterMessageBus {
+
+    private static final Map<String, Map<String, Consumer<ClusterEnvelope>>> GROUPS = new ConcurrentHashMap<>();
+
+    private final Map<String, Consumer<ClusterEnvelope>> nodes;
+
+    public LoopbackClusterMessageBus(String group) {
+        this.nodes = GROUPS.computeIfAbsent(group, name -> new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public String transport() {
+        return "loopback";
+    }
+
+    @Override
+    public void publish(String targetNodeId, ClusterEnvelope envelope) {
+        if (targetNodeId == null) {
+            nodes.values().forEach(handler -> handler.accept(envelope));
+            return;
+        }
+        Consumer<ClusterEnvelope> handler = nodes.get(targetNodeId);
+        if (handler != null) {
+            handler.accept(envelope);
+        }
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<ClusterEnvelope> handler) {
+        nodes.put(nodeId, handler);
+    }
+
+    @Override
+    public void unsubscribe(String nodeId) {
+        nodes.remove(nodeId);
+    }
+}
@@ -0,0 +1,84 @@
+package com.nexus.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Redis pub/sub transport. Each node listens on {@code <prefix>node:<id>} for directed traffic
+ * and on {@code <prefix>all} for broadcasts; envelopes are JSON.
+ */
+@Slf4j
+public class RedisClusterMessageBus implements ClusterMessageBus {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final String channelPrefix;
+    private final Map<String, MessageListener> listeners = new ConcurrentHashMap<>();
+
+    public RedisClusterMessageBus(StringRedisTemplate redisTemplate,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  ObjectMapper objectMapper,
+                                  String channelPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.channelPrefix = channelPrefix;
+    }
+
+    @Override
+    public String transport() {
+        return "redis";
+    }
+
+    @Override
+    public void publish(String targetNodeId, ClusterEnvelope envelope) {
+        String channel = targetNodeId != null ? nodeChannel(targetNodeId) : broadcastChannel();
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize cluster envelope", e);
+        }
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<ClusterEnvelope> handler) {
+        MessageListener listener = (message, pattern) -> {
+            try {
+                handler.accept(objectMapper.readValue(message.getBody(), ClusterEnvelope.class));
+            } catch (IOException e) {
+                log.warn("Discarding unreadable cluster envelope: {}", e.getMessage());
+            }
+        };
+        listeners.put(nodeId, listener);
+        listenerContainer.addMessageListener(listener,
+                List.of(new ChannelTopic(nodeChannel(nodeId)), new ChannelTopic(broadcastChannel())));
+    }
+
+    @Override
+    public void unsubscribe(String nodeId) {
+        MessageListener listener = listeners.remove(nodeId);
+        if (listener != null) {
+            listenerContainer.removeMessageListener(listener);
+        }
+    }
+
+    private String nodeChannel(String nodeId) {
+        return channelPrefix + "node:" + nodeId;
+    }
+
+    private String broadcastChannel() {
+        return channelPrefix + "all";
+    }
+}
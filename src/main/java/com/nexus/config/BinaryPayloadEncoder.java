@@ -0,0 +1,125 @@
+package com.nexus.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-connection opt-in to CBOR for outbound frames. A client sends
+ * {@code accept-content-type: application/cbor} on CONNECT; every JSON MESSAGE frame to that
+ * session is then re-encoded as CBOR and sent as a binary frame with an
+ * {@code application/octet-stream} content type (the only type Spring sends as binary) and a
+ * {@code nexus-encoding: cbor} header. JSON stays the default, and SockJS sessions, which can
+ * only carry text, are never switched.
+ * <p>
+ * The broker shares one payload array between all sessions subscribed to a destination, so the
+ * CBOR form is cached by array identity and each payload is transcoded at most once.
+ */
+@Component
+@Slf4j
+public class BinaryPayloadEncoder implements ChannelInterceptor {
+
+    public static final String ACCEPT_CONTENT_TYPE_HEADER = "accept-content-type";
+    public static final String ENCODING_HEADER = "nexus-encoding";
+    public static final MimeType APPLICATION_CBOR = MimeType.valueOf("application/cbor");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    // weakKeys() compares by identity, which is exactly what shared payload arrays need
+    private final Cache<byte[], byte[]> transcoded = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(1024)
+            .build();
+
+    /**
+     * Called for CONNECT frames; records the session's preferred encoding.
+     */
+    public void negotiate(StompHeaderAccessor connectAccessor) {
+        String accept = connectAccessor.getFirstNativeHeader(ACCEPT_CONTENT_TYPE_HEADER);
+        try {
+            if (accept == null || !APPLICATION_CBOR.isCompatibleWith(MimeType.valueOf(accept))) {
+                return;
+            }
+        } catch (InvalidMimeTypeException e) {
+            return;
+        }
+        Map<String, Object> attributes = connectAccessor.getSessionAttributes();
+        Object transport = attributes != null ? attributes.get(TransportHandshakeInterceptor.TRANSPORT_ATTRIBUTE) : null;
+        if (!TransportHandshakeInterceptor.WEBSOCKET.equals(transport)) {
+            log.debug("Ignoring CBOR request from session {} on transport {}", connectAccessor.getSessionId(), transport);
+            return;
+        }
+        cborSessions.add(connectAccessor.getSessionId());
+    }
+
+    public boolean isCborSession(String sessionId) {
+        return sessionId != null && cborSessions.contains(sessionId);
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !isCborSession(SimpMessageHeaderAccessor.getSessionId(headers))
+                || !(message.getPayload() instanceof byte[] json)
+                || json.length == 0
+                || !isJson(headers.get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(ENCODING_HEADER, "cbor");
+        return MessageBuilder.createMessage(transcoded.get(json, this::toCbor), accessor.getMessageHeaders());
+    }
+
+    private static boolean isJson(Object contentType) {
+        MimeType mimeType = contentType instanceof MimeType type ? type
+                : contentType instanceof String value ? MimeType.valueOf(value)
+                : null;
+        return mimeType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+    }
+
+    private byte[] toCbor(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = cborFactory.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to transcode payload to CBOR", e);
+        }
+        return out.toByteArray();
+    }
+}
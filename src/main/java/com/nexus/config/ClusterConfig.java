@@ -0,0 +1,60 @@
+package com.nexus.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.cluster.ClusterMessageBus;
+import com.nexus.cluster.LoopbackClusterMessageBus;
+import com.nexus.cluster.RedisClusterMessageBus;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Selects the {@link ClusterMessageBus} from {@code app.cluster.transport}: {@code none} (single
+ * node, no bean), {@code loopback} (in-JVM, for tests) or {@code redis}; clustered nodes also
+ * allocate message IDs one at a time.
+ */
+@Configuration
+public class ClusterConfig {
+
+    /**
+     * A single node takes message IDs from message_id_seq in blocks (pooled-lo). With several
+     * nodes each would insert from its own block, and IDs would no longer follow send order, which
+     * read watermarks, keyset history and sync cursors rely on; so clustered nodes take one
+     * sequence value per message. The values stay {@code INCREMENT BY} apart, which is harmless.
+     */
+    @Bean
+    @ConditionalOnExpression("!'${app.cluster.transport:none}'.equalsIgnoreCase('none')")
+    public HibernatePropertiesCustomizer messageIdPerInsertCustomizer() {
+        return properties -> properties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "none");
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.transport", havingValue = "loopback")
+    public ClusterMessageBus loopbackClusterMessageBus(@Value("${app.cluster.loopback.group:default}") String group) {
+        return new LoopbackClusterMessageBus(group);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.transport", havingValue = "redis")
+    public RedisMessageListenerContainer clusterListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.transport", havingValue = "redis")
+    public ClusterMessageBus redisClusterMessageBus(StringRedisTemplate redisTemplate,
+                                                    RedisMessageListenerContainer clusterListenerContainer,
+                                                    ObjectMapper objectMapper,
+                                                    @Value("${app.cluster.redis.channel-prefix:nexus:cluster:}") String channelPrefix) {
+        return new RedisClusterMessageBus(redisTemplate, clusterListenerContainer, objectMapper, channelPrefix);
+    }
+}
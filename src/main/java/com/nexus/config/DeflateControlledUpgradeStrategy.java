@@ -0,0 +1,72 @@
+package com.nexus.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upgrade strategy that lets an endpoint switch permessage-deflate on or off. Tomcat negotiates
+ * its built-in extensions straight from the request headers, so filtering Spring's extension list
+ * is not enough; when compression is off the extension offer is hidden from the container.
+ */
+public class DeflateControlledUpgradeStrategy implements RequestUpgradeStrategy {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    private final RequestUpgradeStrategy delegate = new StandardWebSocketUpgradeStrategy();
+    private final boolean deflateEnabled;
+
+    public DeflateControlledUpgradeStrategy(boolean deflateEnabled) {
+        this.deflateEnabled = deflateEnabled;
+    }
+
+    @Override
+    public String[] getSupportedVersions() {
+        return delegate.getSupportedVersions();
+    }
+
+    @Override
+    public List<WebSocketExtension> getSupportedExtensions(ServerHttpRequest request) {
+        return deflateEnabled ? delegate.getSupportedExtensions(request) : Collections.emptyList();
+    }
+
+    @Override
+    public void upgrade(ServerHttpRequest request, ServerHttpResponse response, String selectedProtocol,
+                        List<WebSocketExtension> selectedExtensions, Principal user,
+                        WebSocketHandler wsHandler, Map<String, Object> attributes) throws HandshakeFailureException {
+        if (!deflateEnabled && request instanceof ServletServerHttpRequest servletRequest) {
+            request = new ServletServerHttpRequest(new WithoutExtensionOffer(servletRequest.getServletRequest()));
+        }
+        delegate.upgrade(request, response, selectedProtocol, selectedExtensions, user, wsHandler, attributes);
+    }
+
+    private static final class WithoutExtensionOffer extends HttpServletRequestWrapper {
+
+        WithoutExtensionOffer(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.nexus.config;
+
+import com.nexus.service.OutboundMessageSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for the client outbound channel. Every session has its own queue, drained in order by
+ * a virtual thread that exists only while the queue is non-empty, so frames reach a connection in
+ * publish order and a connection that blocks in a send (for up to the send time limit) only delays
+ * itself.
+ * <p>
+ * Each session's backlog is bounded. Past {@code soft-limit}, frames marked
+ * {@link OutboundMessageSender#DROPPABLE_HEADER} (typing started) are dropped; at
+ * {@code hard-limit} the session is disconnected and the client has to reconnect and resync.
+ * With the {@code DISCONNECT} policy nothing is dropped and only the hard limit applies.
+ */
+@Component
+@Slf4j
+public class SessionLaneExecutor implements Executor, DisposableBean {
+
+    public enum OverflowPolicy {
+        DROP_LOW_PRIORITY_THEN_DISCONNECT,
+        DISCONNECT
+    }
+
+    // Frames without a session (none are expected) still need one order among themselves
+    private static final String NO_SESSION = "";
+
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final ExecutorService drainers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("clientOutbound-", 0).factory());
+    private final int softLimit;
+    private final int hardLimit;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final Counter dropped;
+    private final Counter disconnects;
+
+    public SessionLaneExecutor(WebSocketSessionRegistry sessionRegistry,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.websocket.outbound.session-soft-limit:256}") int softLimit,
+                               @Value("${app.websocket.outbound.session-hard-limit:1024}") int hardLimit,
+                               @Value("${app.websocket.outbound.overflow-policy:DROP_LOW_PRIORITY_THEN_DISCONNECT}") OverflowPolicy overflowPolicy) {
+        this.sessionRegistry = sessionRegistry;
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.dropped = meterRegistry.counter("websocket.outbound.dropped");
+        this.disconnects = meterRegistry.counter("websocket.outbound.disconnects");
+        meterRegistry.gaugeMapSize("websocket.outbound.sessions", List.of(), lanes);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Message<?> message = task instanceof MessageHandlingRunnable runnable ? runnable.getMessage() : null;
+        String sessionId = message != null ? SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) : null;
+        if (sessionId == null) {
+            enqueue(NO_SESSION, task);
+            return;
+        }
+
+        Lane lane = lanes.computeIfAbsent(sessionId, Lane::new);
+        int queued = lane.size.get();
+        if (queued >= softLimit && overflowPolicy == OverflowPolicy.DROP_LOW_PRIORITY_THEN_DISCONNECT
+                && isDroppable(message.getHeaders())) {
+            dropped.increment();
+            return;
+        }
+        if (queued >= hardLimit) {
+            dropped.increment();
+            if (sessionRegistry.close(sessionId, CloseStatus.SESSION_NOT_RELIABLE)) {
+                disconnects.increment();
+                log.warn("Disconnected slow WebSocket session {} with {} frames queued", sessionId, queued);
+            }
+            return;
+        }
+        enqueue(sessionId, task);
+    }
+
+    /**
+     * Runs {@code callback} on the session's lane once every frame queued for it so far has been
+     * written, without counting towards its backlog.
+     */
+    public void runAfterQueued(String sessionId, Runnable callback) {
+        enqueue(sessionId != null ? sessionId : NO_SESSION, new Callback(callback));
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Lane lane = lanes.get(event.getSessionId());
+        if (lane != null && lane.size.get() == 0) {
+            lanes.remove(event.getSessionId(), lane);
+        }
+    }
+
+    public int getBacklog(String sessionId) {
+        Lane lane = lanes.get(sessionId);
+        return lane != null ? lane.size.get() : 0;
+    }
+
+    @Override
+    public void destroy() {
+        drainers.shutdown();
+    }
+
+    private void enqueue(String sessionId, Runnable task) {
+        Lane lane = lanes.computeIfAbsent(sessionId, Lane::new);
+        if (!(task instanceof Callback)) {
+            lane.size.incrementAndGet();
+        }
+        lane.tasks.add(task);
+        if (lane.draining.compareAndSet(false, true)) {
+            drainers.execute(() -> drain(lane));
+        }
+    }
+
+    private void drain(Lane lane) {
+        do {
+            Runnable task;
+            while ((task = lane.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Outbound task for session {} failed", lane.sessionId, e);
+                } finally {
+                    if (!(task instanceof Callback)) {
+                        lane.size.decrementAndGet();
+                    }
+                }
+            }
+            lane.draining.set(false);
+            // A task added after the last poll but before the flag was cleared would be stranded
+        } while (!lane.tasks.isEmpty() && lane.draining.compareAndSet(false, true));
+
+        if (lane.size.get() == 0 && !NO_SESSION.equals(lane.sessionId) && !sessionRegistry.isOpen(lane.sessionId)) {
+            lanes.remove(lane.sessionId, lane);
+        }
+    }
+
+    private static boolean isDroppable(MessageHeaders headers) {
+        return Boolean.TRUE.equals(headers.get(OutboundMessageSender.DROPPABLE_HEADER));
+    }
+
+    private static final class Lane {
+        private final String sessionId;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Lane(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+
+    private record Callback(Runnable callback) implements Runnable {
+        @Override
+        public void run() {
+            callback.run();
+        }
+    }
+}
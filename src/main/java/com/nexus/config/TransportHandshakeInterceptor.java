@@ -0,0 +1,37 @@
+package com.nexus.config;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Records which endpoint a STOMP session came in through, so later stages can tell SockJS
+ * sessions (text frames only) from native WebSocket sessions.
+ */
+public class TransportHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String TRANSPORT_ATTRIBUTE = "nexus.transport";
+    public static final String SOCKJS = "sockjs";
+    public static final String WEBSOCKET = "websocket";
+
+    private final String transport;
+
+    public TransportHandshakeInterceptor(String transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        attributes.put(TRANSPORT_ATTRIBUTE, transport);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.nexus.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier (blocking inside {@code synchronized}
+ * or a native frame) for longer than {@code threshold-ms}, using the JFR
+ * {@code jdk.VirtualThreadPinned} event. Every pinning is recorded in the
+ * {@code jvm.threads.virtual.pinned} timer; the first occurrence per code location is logged with
+ * its stack so the offending lock can be found.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_LOGGED_LOCATIONS = 256;
+    private static final int LOGGED_FRAMES = 12;
+
+    private final Duration threshold;
+    private final Timer pinned;
+    private final Set<String> loggedLocations = ConcurrentHashMap.newKeySet();
+
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${app.virtual-threads.pinning-threshold-ms:20}") long thresholdMs) {
+        this.threshold = Duration.ofMillis(thresholdMs);
+        this.pinned = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier longer than the threshold")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (stream != null) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Reporting virtual thread pinning longer than {} ms", threshold.toMillis());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return stream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.record(event.getDuration());
+        if (event.getStackTrace() == null) {
+            return;
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        String location = frames.stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(VirtualThreadPinningMonitor::describe)
+                .filter(frame -> frame.startsWith("com.nexus."))
+                .findFirst()
+                .orElse(frames.isEmpty() ? "unknown" : describe(frames.get(0)));
+        if (loggedLocations.size() < MAX_LOGGED_LOCATIONS && loggedLocations.add(location)) {
+            StringBuilder stack = new StringBuilder();
+            frames.stream().limit(LOGGED_FRAMES).forEach(frame -> stack.append("\n\tat ").append(describe(frame)));
+            log.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), location, stack);
+        }
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+}
@@ -1,13 +1,21 @@
 package com.nexus.config;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.nexus.cluster.ClusterRouter;
+import com.nexus.service.EphemeralMessageService;
 import com.nexus.service.JwtService;
+import com.nexus.service.UserIdentityCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.stomp.StompCommand;
@@ -17,10 +25,13 @@ import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -31,11 +42,55 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final UserIdentityCache userIdentityCache;
+    private final BinaryPayloadEncoder binaryPayloadEncoder;
+    private final WebSocketTrafficMetrics webSocketTrafficMetrics;
+    private final WebSocketSessionRegistry webSocketSessionRegistry;
+    private final SessionLaneExecutor sessionLaneExecutor;
+    private final ClusterRouter clusterRouter;
+    private final EphemeralMessageService ephemeralMessageService;
+
+    @Value("${app.websocket.native.permessage-deflate:true}")
+    private boolean nativeDeflateEnabled;
+
+    @Value("${app.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${app.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${app.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${app.websocket.broker.subscription-cache-limit:1024}")
+    private int subscriptionCacheLimit;
+
+    @Value("${app.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${app.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.inbound.keep-alive-seconds:60}")
+    private int inboundKeepAliveSeconds;
+
+    @Value("${app.websocket.inbound.virtual-concurrency-limit:256}")
+    private int inboundVirtualConcurrencyLimit;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic", "/user", "/queue");
+        // No destination uses STOMP selectors, so skip evaluating them for every subscriber.
+        registry.enableSimpleBroker("/topic", "/user", "/queue")
+                .setSelectorHeaderName(null);
+        registry.setCacheLimit(subscriptionCacheLimit);
+        // Copies user-destination messages to other nodes hosting the same user.
+        registry.configureBrokerChannel().interceptors(clusterRouter);
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
     }
@@ -46,11 +101,59 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Add allowedOrigins to fix Cross-Origin Resource Sharing (CORS) issues with the frontend dev server.
         registry.addEndpoint("/ws")
                 .setAllowedOrigins("http://localhost:3000", "http://188.191.107.33:3000")
+                .addInterceptors(new TransportHandshakeInterceptor(TransportHandshakeInterceptor.SOCKJS))
                 .withSockJS();
+
+        // Native WebSocket endpoint for clients that do not need SockJS fallbacks; it is the only one
+        // that can carry binary (CBOR) frames.
+        registry.addEndpoint("/ws-native")
+                .setAllowedOrigins("http://localhost:3000", "http://188.191.107.33:3000")
+                .setHandshakeHandler(new DefaultHandshakeHandler(new DeflateControlledUpgradeStrategy(nativeDeflateEnabled)))
+                .addInterceptors(new TransportHandshakeInterceptor(TransportHandshakeInterceptor.WEBSOCKET));
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .addDecoratorFactory(webSocketSessionRegistry)
+                .addDecoratorFactory(webSocketTrafficMetrics);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Used only for frames that declare content-type application/cbor; JSON stays the default.
+        MappingJackson2MessageConverter cborConverter = new MappingJackson2MessageConverter(BinaryPayloadEncoder.APPLICATION_CBOR);
+        cborConverter.setObjectMapper(CBORMapper.builder().findAndAddModules().build());
+        cborConverter.setStrictContentTypeMatch(true);
+        messageConverters.add(cborConverter);
+        return true;
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Per-session ordered queues with bounded backlogs instead of one shared pool.
+        registration.executor(sessionLaneExecutor);
+        registration.interceptors(binaryPayloadEncoder);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            // One virtual thread per frame; the limit makes the WebSocket reader wait instead of
+            // piling up handlers that would all queue on the connection pool anyway.
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("clientInboundChannel-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(inboundVirtualConcurrencyLimit);
+            registration.executor(executor);
+        } else {
+            registration.taskExecutor()
+                    .corePoolSize(inboundCorePoolSize)
+                    .maxPoolSize(inboundMaxPoolSize)
+                    .queueCapacity(inboundQueueCapacity)
+                    .keepAliveSeconds(inboundKeepAliveSeconds);
+        }
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -59,6 +162,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
                 // Authenticate only on the CONNECT command
                 if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+                    binaryPayloadEncoder.negotiate(accessor);
+
                     // Get the token from the 'X-Authorization' native header sent by the client
                     String authHeader = accessor.getFirstNativeHeader("X-Authorization");
                     log.debug("X-Authorization header: {}", authHeader);
@@ -69,7 +174,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         log.debug("Username extracted from JWT: {}", username);
 
                         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                            UserDetails userDetails = userIdentityCache.loadUserByUsername(username);
 
                             // If the token is valid, create an authentication token
                             if (jwtService.isTokenValid(jwt, userDetails)) {
@@ -85,5 +190,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 return message;
             }
         });
+        // Hands held ephemeral messages to a recipient once its subscription is registered.
+        registration.interceptors(ephemeralMessageService);
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.nexus.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the open WebSocket sessions by ID so code that only sees STOMP messages (which carry the
+ * same session ID) can close a connection.
+ */
+@Component
+@Slf4j
+public class WebSocketSessionRegistry implements WebSocketHandlerDecoratorFactory {
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), session);
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public boolean isOpen(String sessionId) {
+        WebSocketSession session = sessionId != null ? sessions.get(sessionId) : null;
+        return session != null && session.isOpen();
+    }
+
+    /**
+     * Closes the session if it is still open; returns whether this call closed it.
+     */
+    public boolean close(String sessionId, CloseStatus status) {
+        WebSocketSession session = sessionId != null ? sessions.remove(sessionId) : null;
+        if (session == null || !session.isOpen()) {
+            return false;
+        }
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.debug("Failed to close WebSocket session {}: {}", sessionId, e.getMessage());
+        }
+        return true;
+    }
+}
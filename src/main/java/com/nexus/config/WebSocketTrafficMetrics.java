@@ -0,0 +1,105 @@
+package com.nexus.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts WebSocket frames and payload bytes per transport, direction and negotiated compression,
+ * as the {@code websocket.frames} distribution summary (count = frames, total = bytes). Bytes
+ * are measured before permessage-deflate and SockJS framing, so they compare what each transport
+ * has to carry, not what ends up on the wire.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketTrafficMetrics implements WebSocketHandlerDecoratorFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new CountingHandler(handler);
+    }
+
+    private DistributionSummary summary(WebSocketSession session, String direction) {
+        Object transport = session.getAttributes().get(TransportHandshakeInterceptor.TRANSPORT_ATTRIBUTE);
+        boolean deflate = session.getExtensions().stream()
+                .anyMatch(extension -> "permessage-deflate".equalsIgnoreCase(extension.getName()));
+        return DistributionSummary.builder("websocket.frames")
+                .baseUnit("bytes")
+                .tag("transport", transport != null ? transport.toString() : "unknown")
+                .tag("direction", direction)
+                .tag("compression", deflate ? "deflate" : "none")
+                .register(meterRegistry);
+    }
+
+    private final class CountingHandler extends WebSocketHandlerDecorator {
+
+        private final Map<String, CountingSession> sessions = new ConcurrentHashMap<>();
+
+        CountingHandler(WebSocketHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            CountingSession counting = new CountingSession(session);
+            sessions.put(session.getId(), counting);
+            super.afterConnectionEstablished(counting);
+        }
+
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+            CountingSession counting = sessions.get(session.getId());
+            if (counting == null) {
+                super.handleMessage(session, message);
+                return;
+            }
+            counting.inbound.record(message.getPayloadLength());
+            super.handleMessage(counting, message);
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+            CountingSession counting = sessions.get(session.getId());
+            super.handleTransportError(counting != null ? counting : session, exception);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+            CountingSession counting = sessions.remove(session.getId());
+            super.afterConnectionClosed(counting != null ? counting : session, closeStatus);
+        }
+    }
+
+    // The sub-protocol handler sends every outbound frame through the session it was given.
+    private final class CountingSession extends WebSocketSessionDecorator {
+
+        private final DistributionSummary inbound;
+        private final DistributionSummary outbound;
+
+        CountingSession(WebSocketSession session) {
+            super(session);
+            this.inbound = summary(session, "inbound");
+            this.outbound = summary(session, "outbound");
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            outbound.record(message.getPayloadLength());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.nexus.controller;
 
 import com.nexus.model.dto.ChatMessageDto;
 import com.nexus.model.dto.UserDetailsDto;
+import com.nexus.service.MessageSearchIndex;
 import com.nexus.service.MessageService;
 import com.nexus.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +19,7 @@ public class AdminController {
 
     private final UserService userService;
     private final MessageService messageService;
+    private final MessageSearchIndex messageSearchIndex;
 
     @GetMapping("/users")
     public ResponseEntity<List<UserDetailsDto>> getAllUsers() {
@@ -45,4 +47,13 @@ public class AdminController {
             return ResponseEntity.status(500).build();
         }
     }
+
+    /**
+     * Rebuilds the message search index from the database in the background.
+     */
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Void> rebuildSearchIndex() {
+        messageSearchIndex.rebuildAsync();
+        return ResponseEntity.accepted().build();
+    }
 }
@@ -2,43 +2,59 @@ package com.nexus.controller;
 
 import com.nexus.mapper.MessageMapper;
 import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.DeliveryAckDto;
 import com.nexus.model.dto.MessageStatusUpdateDto;
+import com.nexus.model.dto.StatusWatermarkDto;
+import com.nexus.model.dto.SyncRequestDto;
 import com.nexus.model.dto.TypingStatusDto;
 import com.nexus.model.entity.Message;
 import com.nexus.model.entity.MessageStatus;
+import com.nexus.service.DeliveryAckService;
+import com.nexus.service.EphemeralMessageService;
 import com.nexus.service.MessageService;
+import com.nexus.service.MessageSyncService;
+import com.nexus.service.OutboundMessageSender;
+import com.nexus.service.TypingIndicatorService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+import java.util.List;
+
 @Controller
 @RequiredArgsConstructor
 public class ChatController {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final OutboundMessageSender outboundMessageSender;
     private final MessageService messageService;
     private final MessageMapper messageMapper;
+    private final TypingIndicatorService typingIndicatorService;
+    private final DeliveryAckService deliveryAckService;
+    private final MessageSyncService messageSyncService;
+    private final EphemeralMessageService ephemeralMessageService;
 
     @MessageMapping("/chat.send")
-    public void sendMessage(@Payload ChatMessageDto chatMessageDto) {
+    public void sendMessage(@Payload ChatMessageDto chatMessageDto, Principal principal) {
+        if (chatMessageDto.isEphemeral()) {
+            // Routed to the recipient's sessions, or held in memory; never written
+            ephemeralMessageService.send(principal.getName(), chatMessageDto);
+            return;
+        }
         Message savedMessage = messageService.saveMessage(chatMessageDto);
 
         // Convert the saved message entity back to a DTO to ensure all fields are correct
         ChatMessageDto messageToSend = messageMapper.messageToChatMessageDto(savedMessage);
         messageToSend.setTempId(chatMessageDto.getTempId());
 
-        // Send the message to the recipient
-        messagingTemplate.convertAndSendToUser(
-                savedMessage.getRecipient().getUsername(),
-                "/queue/messages",
-                messageToSend
-        );
-
-        // Also send the message back to the sender for real-time UI update
-        messagingTemplate.convertAndSendToUser(
-                savedMessage.getSender().getUsername(),
+        // Send the message to the recipient, and back to the sender for real-time UI update.
+        // The payload is serialized once for both.
+        outboundMessageSender.sendToUsers(
+                List.of(savedMessage.getRecipient().getUsername(), savedMessage.getSender().getUsername()),
                 "/queue/messages",
                 messageToSend
         );
@@ -46,6 +62,7 @@ public class ChatController {
 
     @MessageMapping("/chat.markAsRead")
     public void markAsRead(@Payload MessageStatusUpdateDto statusUpdate) {
+        messageService.awaitPersisted(statusUpdate.getMessageId());
         messageService.updateStatus(statusUpdate.getMessageId(), MessageStatus.READ);
         // Notify the sender
         Message message = messageService.getMessageById(statusUpdate.getMessageId());
@@ -56,12 +73,38 @@ public class ChatController {
         );
     }
 
+    @MessageMapping("/chat.markConversationRead")
+    public void markConversationRead(@Payload StatusWatermarkDto watermark, Principal principal) {
+        String readerUsername = principal.getName();
+        messageService.awaitPersisted(watermark.getUpToMessageId());
+        int updated = messageService.markConversationRead(
+                readerUsername, watermark.getPeerUsername(), watermark.getUpToMessageId());
+        if (updated > 0) {
+            // One event for the whole range instead of a MessageStatusUpdateDto per message
+            messagingTemplate.convertAndSendToUser(
+                    watermark.getPeerUsername(),
+                    "/queue/status",
+                    new StatusWatermarkDto(readerUsername, watermark.getUpToMessageId(), MessageStatus.READ)
+            );
+        }
+    }
+
+    @MessageMapping("/chat.ack")
+    public void acknowledgeDelivery(@Payload DeliveryAckDto ack, Principal principal) {
+        // Applied in batches; the sender gets one aggregated DELIVERED frame per window
+        deliveryAckService.acknowledge(principal.getName(), ack.getSenderUsername(), ack.getMessageIds());
+    }
+
+    @MessageMapping("/chat.sync")
+    public void sync(@Payload SyncRequestDto request, Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        // Replies in chunks on /user/queue/sync, to the requesting session only
+        String username = principal.getName();
+        messageSyncService.streamToSession(username, headerAccessor.getSessionId(),
+                messageSyncService.resolveSince(username, request.getSince(), request.getLastMessageId()));
+    }
+
     @MessageMapping("/chat.typing")
-    public void typing(@Payload TypingStatusDto typingStatusDto) {
-        messagingTemplate.convertAndSendToUser(
-                typingStatusDto.getToUsername(),
-                "/queue/status",
-                typingStatusDto
-        );
+    public void typing(@Payload TypingStatusDto typingStatusDto, Principal principal) {
+        typingIndicatorService.onTypingEvent(principal.getName(), typingStatusDto);
     }
 }
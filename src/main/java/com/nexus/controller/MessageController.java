@@ -1,17 +1,31 @@
 package com.nexus.controller;
 
-import com.nexus.mapper.MessageMapper;
 import com.nexus.model.dto.ChatMessageDto;
-import com.nexus.model.entity.Message;
+import com.nexus.model.dto.MessageSearchPageDto;
+import com.nexus.model.dto.MessageSliceDto;
+import com.nexus.model.dto.UnreadCountsDto;
+import com.nexus.model.entity.User;
+import com.nexus.service.MessageSearchIndex;
 import com.nexus.service.MessageService;
+import com.nexus.service.MessageSyncService;
+import com.nexus.service.OutboundMessageSender;
+import com.nexus.service.UnreadCountService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 @RequestMapping("/messages")
@@ -19,8 +33,10 @@ import org.springframework.web.bind.annotation.*;
 public class MessageController {
 
     private final MessageService messageService;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final MessageMapper messageMapper;
+    private final OutboundMessageSender outboundMessageSender;
+    private final MessageSyncService messageSyncService;
+    private final UnreadCountService unreadCountService;
+    private final MessageSearchIndex messageSearchIndex;
 
     @GetMapping("/{senderId}/{recipientId}")
     public ResponseEntity<Page<ChatMessageDto>> getMessageHistory(
@@ -33,19 +49,80 @@ public class MessageController {
         return ResponseEntity.ok(messages);
     }
 
+    /**
+     * Cursor-based history: pass the previous response's {@code nextCursor} as {@code before} to
+     * scroll back, or a message ID as {@code after} to read forward. No total count is computed.
+     * Only the two participants may read a conversation.
+     */
+    @GetMapping("/{senderId}/{recipientId}/scroll")
+    public ResponseEntity<MessageSliceDto> scrollMessageHistory(
+            @AuthenticationPrincipal User currentUser,
+            @PathVariable Long senderId,
+            @PathVariable Long recipientId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size) {
+        if (!currentUser.getId().equals(senderId) && !currentUser.getId().equals(recipientId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (before != null && after != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(messageService.getMessageHistorySlice(senderId, recipientId, before, after, size));
+    }
+
+    /**
+     * Everything new or changed since the client's cursor (or its last message) across all of its
+     * conversations, streamed as {@code {"messages":[...],"cursor":"..."}}.
+     */
+    @GetMapping("/sync")
+    public ResponseEntity<StreamingResponseBody> sync(
+            @AuthenticationPrincipal User currentUser,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) Long lastMessageId) {
+        if (since == null && lastMessageId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        String username = currentUser.getUsername();
+        LocalDateTime from = messageSyncService.resolveSince(username, since, lastMessageId);
+        StreamingResponseBody body = out -> messageSyncService.writeJson(username, from, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Unread counts of all of the caller's conversations; changes are pushed on /user/queue/unread.
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<UnreadCountsDto> getUnreadCounts(@AuthenticationPrincipal User currentUser) {
+        return ResponseEntity.ok(unreadCountService.getUnreadCounts(currentUser.getId()));
+    }
+
+    /**
+     * Full-text search over the caller's text messages, optionally only those exchanged with
+     * {@code peerId}. Every word of {@code q} must match; hits are ranked by relevance, then recency.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<MessageSearchPageDto> searchMessages(
+            @AuthenticationPrincipal User currentUser,
+            @RequestParam String q,
+            @RequestParam(required = false) Long peerId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (!StringUtils.hasText(q) || page < 0 || size < 1 || size > 100
+                || (page + 1) * size > messageSearchIndex.getMaxResults()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(messageSearchIndex.search(currentUser.getId(), peerId, q, page, size));
+    }
+
     @DeleteMapping("/{messageId}")
     public ResponseEntity<Void> deleteMessage(@PathVariable Long messageId) {
-        Message deletedMessage = messageService.softDeleteMessage(messageId);
-        ChatMessageDto messageDto = messageMapper.messageToChatMessageDto(deletedMessage);
+        messageService.awaitPersisted(messageId);
+        ChatMessageDto messageDto = messageService.softDeleteMessage(messageId);
 
         // Broadcast the deleted message update to both users
-        messagingTemplate.convertAndSendToUser(
-                deletedMessage.getSender().getUsername(),
-                "/queue/messages",
-                messageDto
-        );
-        messagingTemplate.convertAndSendToUser(
-                deletedMessage.getRecipient().getUsername(),
+        outboundMessageSender.sendToUsers(
+                List.of(messageDto.getSenderUsername(), messageDto.getRecipientUsername()),
                 "/queue/messages",
                 messageDto
         );
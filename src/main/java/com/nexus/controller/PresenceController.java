@@ -0,0 +1,32 @@
+package com.nexus.controller;
+
+import com.nexus.model.dto.PresenceWatchDto;
+import com.nexus.service.OutboundMessageSender;
+import com.nexus.service.PresenceFanoutService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.List;
+
+@Controller
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private final PresenceFanoutService presenceFanoutService;
+    private final OutboundMessageSender outboundMessageSender;
+
+    @MessageMapping("/presence.watch")
+    public void watch(@Payload PresenceWatchDto request, Principal principal) {
+        // Current presence of the watched users comes back right away; changes follow as diffs
+        outboundMessageSender.sendToUsers(List.of(principal.getName()), "/queue/presence",
+                presenceFanoutService.watch(principal.getName(), request.getUsernames()));
+    }
+
+    @MessageMapping("/presence.unwatch")
+    public void unwatch(@Payload PresenceWatchDto request, Principal principal) {
+        presenceFanoutService.unwatch(principal.getName(), request.getUsernames());
+    }
+}
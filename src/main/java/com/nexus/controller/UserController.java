@@ -1,6 +1,7 @@
 package com.nexus.controller;
 
-import com.nexus.model.dto.UserSearchDto;
+import com.nexus.model.dto.ContactDto;
+import com.nexus.model.dto.UserSearchPageDto;
 import com.nexus.model.entity.User;
 import com.nexus.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -18,15 +19,33 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
 
+    private static final int MAX_CONTACTS_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     private final UserService userService;
 
     @GetMapping("/search")
-    public ResponseEntity<List<UserSearchDto>> searchUsers(@RequestParam String username) {
-        return ResponseEntity.ok(userService.searchUsers(username));
+    public ResponseEntity<UserSearchPageDto> searchUsers(@RequestParam String username,
+                                                         @RequestParam(defaultValue = "20") int limit,
+                                                         @RequestParam(required = false) String cursor) {
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(userService.searchUsers(username, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/contacts")
-    public ResponseEntity<List<UserSearchDto>> getContacts(@AuthenticationPrincipal User currentUser) {
-        return ResponseEntity.ok(userService.getContactsWithOnlineStatus(currentUser.getId()));
+    public ResponseEntity<List<ContactDto>> getContacts(@AuthenticationPrincipal User currentUser,
+                                                        @RequestParam(defaultValue = "0") int page,
+                                                        @RequestParam(defaultValue = "100") int size) {
+        if (page < 0 || size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.getContactsWithOnlineStatus(currentUser.getId(), page, Math.min(size, MAX_CONTACTS_PAGE_SIZE)));
     }
 }
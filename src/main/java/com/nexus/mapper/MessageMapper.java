@@ -18,4 +18,6 @@ public interface MessageMapper {
     @Mapping(target = "tempId", ignore = true)
     @Mapping(target = "ephemeral", ignore = true)
     ChatMessageDto messageToChatMessageDto(Message message);
+
+    ChatMessageDto copy(ChatMessageDto dto);
 }
@@ -3,10 +3,12 @@ package com.nexus.model.dto;
 import com.nexus.model.entity.MessageStatus;
 import com.nexus.model.entity.MessageType;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class ChatMessageDto {
     private Long id;
     private String tempId;
@@ -18,4 +20,17 @@ public class ChatMessageDto {
     private LocalDateTime timestamp; // Added for media management view
     private boolean ephemeral = false;
     private boolean deleted = false; // Added for soft delete
+
+    // Used by the MessageRepository projections
+    public ChatMessageDto(Long id, String senderUsername, String recipientUsername, String content,
+                          MessageType type, MessageStatus status, LocalDateTime timestamp, boolean deleted) {
+        this.id = id;
+        this.senderUsername = senderUsername;
+        this.recipientUsername = recipientUsername;
+        this.content = content;
+        this.type = type;
+        this.status = status;
+        this.timestamp = timestamp;
+        this.deleted = deleted;
+    }
 }
@@ -0,0 +1,32 @@
+package com.nexus.model.dto;
+
+import com.nexus.model.entity.MessageType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A contact list entry: the peer, their presence and the conversation's last message and unread
+ * count for the requesting user. {@code lastMessagePreview} is null for media and deleted messages.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactDto {
+    private Long id;
+    private String username;
+    private boolean isOnline;
+    private Long lastMessageId;
+    private Long lastSenderId;
+    private MessageType lastMessageType;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private int unreadCount;
+
+    public ContactDto(Long id, String username, Long lastMessageId, Long lastSenderId, MessageType lastMessageType,
+                      String lastMessagePreview, LocalDateTime lastMessageAt, int unreadCount) {
+        this(id, username, false, lastMessageId, lastSenderId, lastMessageType, lastMessagePreview, lastMessageAt, unreadCount);
+    }
+}
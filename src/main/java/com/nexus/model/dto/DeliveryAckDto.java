@@ -0,0 +1,15 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryAckDto {
+    private String senderUsername;
+    private List<Long> messageIds;
+}
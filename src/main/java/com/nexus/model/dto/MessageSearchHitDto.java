@@ -0,0 +1,22 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message matching a full-text search, with its relevance score (higher is better).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchHitDto {
+    private Long id;
+    private String senderUsername;
+    private String recipientUsername;
+    private String content;
+    private LocalDateTime timestamp;
+    private float score;
+}
@@ -0,0 +1,18 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of search hits, best match first. {@code hasMore} tells whether the next page has any.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchPageDto {
+    private List<MessageSearchHitDto> hits;
+    private boolean hasMore;
+}
@@ -0,0 +1,20 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of a conversation. {@code nextCursor} is the message ID to pass as
+ * {@code before} (or {@code after}) for the following page; it is null when {@code hasMore} is false.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSliceDto {
+    private List<ChatMessageDto> messages;
+    private boolean hasMore;
+    private Long nextCursor;
+}
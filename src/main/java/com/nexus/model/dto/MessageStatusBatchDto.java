@@ -0,0 +1,16 @@
+package com.nexus.model.dto;
+
+import com.nexus.model.entity.MessageStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageStatusBatchDto {
+    private List<Long> messageIds;
+    private MessageStatus status;
+}
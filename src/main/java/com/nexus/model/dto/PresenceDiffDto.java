@@ -0,0 +1,19 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Presence changes for one watcher since the previous diff, sent on /user/queue/presence.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceDiffDto {
+    private List<String> online = new ArrayList<>();
+    private List<String> offline = new ArrayList<>();
+}
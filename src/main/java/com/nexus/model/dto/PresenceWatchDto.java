@@ -0,0 +1,12 @@
+package com.nexus.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class PresenceWatchDto {
+    private List<String> usernames;
+}
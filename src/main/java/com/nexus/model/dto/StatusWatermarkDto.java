@@ -0,0 +1,20 @@
+package com.nexus.model.dto;
+
+import com.nexus.model.entity.MessageStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Status change for every message in a conversation up to and including {@code upToMessageId}.
+ * Sent by a reader with the peer being the sender of the messages, and pushed to the sender
+ * with the peer being the reader.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatusWatermarkDto {
+    private String peerUsername;
+    private Long upToMessageId;
+    private MessageStatus status;
+}
@@ -0,0 +1,21 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One frame of a STOMP delta sync on {@code /user/queue/sync}. Messages are new or changed
+ * (status, deletion) since the requested point; the last frame carries the cursor for the next sync.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncChunkDto {
+    private List<ChatMessageDto> messages;
+    private LocalDateTime cursor;
+    private boolean last;
+}
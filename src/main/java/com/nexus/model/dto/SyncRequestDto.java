@@ -0,0 +1,19 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where a reconnecting client left off: the cursor from its last sync, or failing that the ID
+ * of the last message it has.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncRequestDto {
+    private LocalDateTime since;
+    private Long lastMessageId;
+}
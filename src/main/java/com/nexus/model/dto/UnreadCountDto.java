@@ -5,9 +5,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
-public class UserPresenceDto {
-    private String username;
-    private boolean isOnline;
+@AllArgsConstructor
+public class UnreadCountDto {
+    private Long peerId;
+    private String peerUsername;
+    private int unreadCount;
 }
@@ -0,0 +1,19 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Every conversation of the user with unread messages (conversations not listed have none), and
+ * the sum over all of them. Returned by GET /messages/unread and pushed on /user/queue/unread.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnreadCountsDto {
+    private List<UnreadCountDto> conversations;
+    private int total;
+}
@@ -0,0 +1,20 @@
+package com.nexus.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of username search results, best first. {@code nextCursor} is passed as {@code cursor}
+ * for the following page; it is null when {@code hasMore} is false.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchPageDto {
+    private List<UserSearchDto> users;
+    private boolean hasMore;
+    private String nextCursor;
+}
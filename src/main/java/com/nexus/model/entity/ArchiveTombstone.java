@@ -0,0 +1,25 @@
+package com.nexus.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * An archived message the archive must no longer return: deleted after it was archived, or
+ * changed in the table while the archiver was moving it. Written and read by MessageArchive
+ * through JDBC; mapped so schemas generated from the entities, as in tests, have the table.
+ */
+@Data
+@Entity
+@Table(name = "archive_tombstones")
+public class ArchiveTombstone {
+
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Column(name = "conversation_low_id", nullable = false)
+    private Long conversationLowId;
+
+    @Column(name = "conversation_high_id", nullable = false)
+    private Long conversationHighId;
+}
@@ -0,0 +1,54 @@
+package com.nexus.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One participant's view of a conversation, maintained by ConversationSummaryService as messages
+ * are sent, read and deleted. A conversation between two users has two rows; a user's notes to
+ * themselves have one.
+ */
+@Data
+@Entity
+@IdClass(ConversationId.class)
+@Table(name = "conversations", indexes = {
+        @Index(name = "idx_conversations_user_recency", columnList = "user_id, last_message_at, peer_id"),
+        @Index(name = "idx_conversations_unread", columnList = "user_id")
+})
+public class Conversation {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "peer_id")
+    private Long peerId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "peer_id", insertable = false, updatable = false)
+    private User peer;
+
+    // Null when every message of the conversation has been deleted; last_message_at then keeps
+    // the time of the last activity so the conversation keeps its place in the list.
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_sender_id")
+    private Long lastSenderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_message_type")
+    private MessageType lastMessageType;
+
+    @Column(name = "last_message_preview")
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+}
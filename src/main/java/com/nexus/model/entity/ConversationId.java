@@ -0,0 +1,15 @@
+package com.nexus.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationId implements Serializable {
+    private Long userId;
+    private Long peerId;
+}
@@ -7,11 +7,26 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "messages")
+// The indexes are created by Liquibase (012, partly as partial indexes); they are repeated here so
+// schemas generated from the entities, as in tests, get the same access paths.
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation_live", columnList = "conversation_low_id, conversation_high_id, id"),
+        @Index(name = "idx_messages_conversation_live_ts", columnList = "conversation_low_id, conversation_high_id, timestamp"),
+        @Index(name = "idx_messages_conversation_low_high", columnList = "conversation_low_id, conversation_high_id"),
+        @Index(name = "idx_messages_conversation_high_low", columnList = "conversation_high_id, conversation_low_id"),
+        @Index(name = "idx_messages_type_timestamp", columnList = "type, timestamp"),
+        @Index(name = "idx_messages_expires_at", columnList = "expires_at")
+})
 public class Message {
 
+    // IDs are handed out in blocks from message_id_seq (pooled-lo), so the write-behind path can
+    // assign an ID before the row is inserted. MessageIdAllocator relies on the same block size.
+    // Clustered nodes take one value per message instead (see ClusterConfig).
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_id_seq")
+    @SequenceGenerator(name = "message_id_seq", sequenceName = "message_id_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -26,6 +41,13 @@ public class Message {
     @JoinColumn(name = "recipient_id", nullable = false)
     private User recipient;
 
+    // Canonical conversation key: min and max of the sender and recipient IDs.
+    @Column(name = "conversation_low_id", nullable = false)
+    private Long conversationLowId;
+
+    @Column(name = "conversation_high_id", nullable = false)
+    private Long conversationHighId;
+
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
@@ -41,4 +63,23 @@ public class Message {
 
     @Column(columnDefinition = "BOOLEAN DEFAULT FALSE")
     private boolean deleted = false;
+
+    // Last change of any kind (status, deletion, content); read by delta sync. Bulk JPQL updates
+    // must set it themselves.
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+        assignConversationKey();
+    }
+
+    public void assignConversationKey() {
+        if (sender != null && recipient != null) {
+            conversationLowId = Math.min(sender.getId(), recipient.getId());
+            conversationHighId = Math.max(sender.getId(), recipient.getId());
+        }
+    }
 }
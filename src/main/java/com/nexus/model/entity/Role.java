@@ -1,11 +1,13 @@
 package com.nexus.model.entity;
 
+import com.nexus.service.UserIdentityCacheInvalidator;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Data
 @Entity
 @Table(name = "roles")
+@EntityListeners(UserIdentityCacheInvalidator.class)
 public class Role {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,5 +1,6 @@
 package com.nexus.model.entity;
 
+import com.nexus.service.UserIdentityCacheInvalidator;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
@@ -14,6 +15,7 @@ import java.util.stream.Collectors;
 @Data
 @Entity
 @Table(name = "users")
+@EntityListeners(UserIdentityCacheInvalidator.class)
 public class User implements UserDetails {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,49 @@
+package com.nexus.repository;
+
+import com.nexus.model.dto.ContactDto;
+import com.nexus.model.entity.Conversation;
+import com.nexus.model.entity.ConversationId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ConversationRepository extends JpaRepository<Conversation, ConversationId> {
+
+    /**
+     * A page of the user's conversations, most recent first, read backwards along
+     * idx_conversations_user_recency with the peer's username joined by primary key.
+     */
+    @Query("SELECT new com.nexus.model.dto.ContactDto(p.id, p.username, c.lastMessageId, c.lastSenderId, "
+            + "c.lastMessageType, c.lastMessagePreview, c.lastMessageAt, c.unreadCount) "
+            + "FROM Conversation c JOIN c.peer p WHERE c.userId = :userId "
+            + "ORDER BY c.lastMessageAt DESC, c.peerId DESC")
+    List<ContactDto> findContacts(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Usernames of the user's most recent conversation peers, along the same index.
+     */
+    @Query("SELECT p.username FROM Conversation c JOIN c.peer p WHERE c.userId = :userId "
+            + "ORDER BY c.lastMessageAt DESC, c.peerId DESC")
+    List<String> findPeerUsernames(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Unread counts of the given users' conversations, from the partial idx_conversations_unread.
+     */
+    @Query("SELECT c.userId AS userId, c.peerId AS peerId, p.username AS peerUsername, c.unreadCount AS unreadCount "
+            + "FROM Conversation c JOIN c.peer p WHERE c.userId IN :userIds AND c.unreadCount > 0")
+    List<UnreadRow> findUnread(@Param("userIds") Collection<Long> userIds);
+
+    interface UnreadRow {
+        Long getUserId();
+
+        Long getPeerId();
+
+        String getPeerUsername();
+
+        int getUnreadCount();
+    }
+}
@@ -1,28 +1,108 @@
 package com.nexus.repository;
 
+import com.nexus.model.dto.ChatMessageDto;
 import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
 import com.nexus.model.entity.MessageType;
-import com.nexus.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 
 import java.time.LocalDateTime;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    void deleteByExpiresAtBefore(LocalDateTime timestamp);
+    // History and media are read as ChatMessageDto in one joined query: loading Message entities
+    // would also load both users and, through their EAGER roles, several more selects per page.
+    String CHAT_MESSAGE_DTO = "SELECT new com.nexus.model.dto.ChatMessageDto(m.id, s.username, r.username, "
+            + "m.content, m.type, m.status, m.timestamp, m.deleted) FROM Message m JOIN m.sender s JOIN m.recipient r ";
 
-    @Query("SELECT m FROM Message m WHERE ((m.sender.id = :senderId AND m.recipient.id = :recipientId) OR (m.sender.id = :recipientId AND m.recipient.id = :senderId)) AND m.deleted = false")
-    Page<Message> findConversation(@Param("senderId") Long senderId, @Param("recipientId") Long recipientId, Pageable pageable);
+    @Query(value = CHAT_MESSAGE_DTO + "WHERE m.conversationLowId = :lowId AND m.conversationHighId = :highId AND m.deleted = false",
+            countQuery = "SELECT COUNT(m) FROM Message m WHERE m.conversationLowId = :lowId AND m.conversationHighId = :highId AND m.deleted = false")
+    Page<ChatMessageDto> findConversationByKey(@Param("lowId") Long lowId, @Param("highId") Long highId, Pageable pageable);
 
-    @Query("SELECT DISTINCT m.recipient FROM Message m WHERE m.sender.id = :userId")
-    List<User> findRecipientsForSender(@Param("userId") Long userId);
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversationLowId = :lowId AND m.conversationHighId = :highId AND m.deleted = false")
+    long countConversationByKey(@Param("lowId") Long lowId, @Param("highId") Long highId);
 
-    @Query("SELECT DISTINCT m.sender FROM Message m WHERE m.recipient.id = :userId")
-    List<User> findSendersForRecipient(@Param("userId") Long userId);
+    default Page<ChatMessageDto> findConversation(Long senderId, Long recipientId, Pageable pageable) {
+        return findConversationByKey(Math.min(senderId, recipientId), Math.max(senderId, recipientId), pageable);
+    }
 
-    List<Message> findAllByTypeIn(List<MessageType> types);
-}
+    /**
+     * Messages of the conversation older than {@code beforeId}, newest first, read backwards along
+     * idx_messages_conversation_live; the page size comes from {@code pageable}.
+     */
+    @Query(CHAT_MESSAGE_DTO + "WHERE m.conversationLowId = :lowId AND m.conversationHighId = :highId "
+            + "AND m.deleted = false AND m.id < :beforeId ORDER BY m.id DESC")
+    List<ChatMessageDto> findConversationBeforeByKey(@Param("lowId") Long lowId,
+                                                     @Param("highId") Long highId,
+                                                     @Param("beforeId") Long beforeId,
+                                                     Pageable pageable);
+
+    /**
+     * Messages of the conversation newer than {@code afterId}, oldest first.
+     */
+    @Query(CHAT_MESSAGE_DTO + "WHERE m.conversationLowId = :lowId AND m.conversationHighId = :highId "
+            + "AND m.deleted = false AND m.id > :afterId ORDER BY m.id")
+    List<ChatMessageDto> findConversationAfterByKey(@Param("lowId") Long lowId,
+                                                    @Param("highId") Long highId,
+                                                    @Param("afterId") Long afterId,
+                                                    Pageable pageable);
+
+    default List<ChatMessageDto> findConversationBefore(Long userA, Long userB, Long beforeId, int limit) {
+        return findConversationBeforeByKey(Math.min(userA, userB), Math.max(userA, userB), beforeId, PageRequest.of(0, limit));
+    }
+
+    default List<ChatMessageDto> findConversationAfter(Long userA, Long userB, Long afterId, int limit) {
+        return findConversationAfterByKey(Math.min(userA, userB), Math.max(userA, userB), afterId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * IDs of everyone the user has exchanged messages with, read index-only from
+     * idx_messages_conversation_low_high and idx_messages_conversation_high_low.
+     */
+    @Query("SELECT m.conversationHighId FROM Message m WHERE m.conversationLowId = :userId "
+            + "UNION SELECT m.conversationLowId FROM Message m WHERE m.conversationHighId = :userId")
+    List<Long> findContactIds(@Param("userId") Long userId);
+
+    @Query(CHAT_MESSAGE_DTO + "WHERE m.type IN :types ORDER BY m.timestamp DESC")
+    List<ChatMessageDto> findMediaByTypeIn(@Param("types") List<MessageType> types);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.status = :status, m.updatedAt = LOCAL DATETIME WHERE m.sender.id = :senderId AND m.recipient.id = :recipientId AND m.id <= :upToMessageId AND m.status IN :fromStatuses AND m.deleted = false")
+    int advanceStatusUpTo(@Param("senderId") Long senderId,
+                          @Param("recipientId") Long recipientId,
+                          @Param("upToMessageId") Long upToMessageId,
+                          @Param("fromStatuses") Collection<MessageStatus> fromStatuses,
+                          @Param("status") MessageStatus status);
+
+    @Query("SELECT m.id FROM Message m WHERE m.id IN :messageIds AND m.sender.id = :senderId AND m.recipient.id = :recipientId AND m.status IN :statuses")
+    List<Long> findIdsWithStatus(@Param("messageIds") Collection<Long> messageIds,
+                                 @Param("senderId") Long senderId,
+                                 @Param("recipientId") Long recipientId,
+                                 @Param("statuses") Collection<MessageStatus> statuses);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.status = :status, m.updatedAt = LOCAL DATETIME WHERE m.id IN :messageIds AND m.sender.id = :senderId AND m.recipient.id = :recipientId AND m.status IN :fromStatuses")
+    int advanceStatus(@Param("messageIds") Collection<Long> messageIds,
+                      @Param("senderId") Long senderId,
+                      @Param("recipientId") Long recipientId,
+                      @Param("fromStatuses") Collection<MessageStatus> fromStatuses,
+                      @Param("status") MessageStatus status);
+
+    /**
+     * One keyset page of a user's messages (sent or received) changed after {@code changedSince},
+     * in ID order starting after {@code afterId}.
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.recipient "
+            + "WHERE (m.sender.id = :userId OR m.recipient.id = :userId) "
+            + "AND m.updatedAt > :changedSince AND m.id > :afterId ORDER BY m.id")
+    List<Message> findChangedSince(@Param("userId") Long userId,
+                                   @Param("changedSince") LocalDateTime changedSince,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
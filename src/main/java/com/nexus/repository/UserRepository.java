@@ -2,10 +2,8 @@ package com.nexus.repository;
 
 import com.nexus.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
-import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
-    List<User> findByUsernameContainingIgnoreCase(String username);
 }
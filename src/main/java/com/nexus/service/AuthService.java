@@ -27,6 +27,7 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
+    private final UserSearchIndex userSearchIndex;
 
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.findByUsername(request.getUsername()).isPresent()) {
@@ -42,6 +43,7 @@ public class AuthService {
         user.setRoles(Set.of(userRole));
 
         userRepository.save(user);
+        userSearchIndex.add(user.getId(), user.getUsername());
 
         String jwtToken = jwtService.generateToken(user);
         Set<String> roles = user.getRoles().stream().map(Role::getName).collect(Collectors.toSet());
@@ -0,0 +1,261 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.MessageType;
+import com.nexus.model.entity.User;
+import com.nexus.repository.MessageRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps the {@code conversations} table in step with {@code messages}. Every method runs in the
+ * caller's transaction, so a summary row changes together with the messages it describes.
+ * <p>
+ * Rows are always updated in (user, peer) order, so two transactions touching the same
+ * conversation wait for each other instead of deadlocking.
+ */
+@Service
+public class ConversationSummaryService {
+
+    static final int PREVIEW_LENGTH = 100;
+
+    private static final Comparator<RowKey> ROW_ORDER =
+            Comparator.comparing(RowKey::userId).thenComparing(RowKey::peerId);
+
+    private static final String APPLY_MESSAGE_SQL = "UPDATE conversations SET "
+            + "unread_count = unread_count + :unread, "
+            + "last_sender_id = CASE WHEN last_message_id IS NULL OR last_message_id < :id THEN :senderId ELSE last_sender_id END, "
+            + "last_message_type = CASE WHEN last_message_id IS NULL OR last_message_id < :id THEN :type ELSE last_message_type END, "
+            + "last_message_preview = CASE WHEN last_message_id IS NULL OR last_message_id < :id THEN :preview ELSE last_message_preview END, "
+            + "last_message_at = CASE WHEN last_message_id IS NULL OR last_message_id < :id THEN :at ELSE last_message_at END, "
+            + "last_message_id = CASE WHEN last_message_id IS NULL OR last_message_id < :id THEN :id ELSE last_message_id END "
+            + "WHERE user_id = :userId AND peer_id = :peerId";
+
+    private static final String CREATE_SQL = "INSERT INTO conversations (user_id, peer_id, last_message_at, unread_count) "
+            + "SELECT :userId, :peerId, :at, 0 WHERE NOT EXISTS "
+            + "(SELECT 1 FROM conversations WHERE user_id = :userId AND peer_id = :peerId)";
+
+    private static final String READ_SQL = "UPDATE conversations SET unread_count = GREATEST(unread_count - :count, 0) "
+            + "WHERE user_id = :userId AND peer_id = :peerId";
+
+    private static final String REPLACE_LAST_SQL = "UPDATE conversations SET "
+            + "last_message_id = :id, last_sender_id = :senderId, last_message_type = :type, last_message_preview = :preview "
+            + "WHERE user_id = :userId AND peer_id = :peerId AND last_message_id = :deletedId";
+
+    private static final String EXPIRE_SQL = "UPDATE conversations SET "
+            + "unread_count = GREATEST(unread_count - :unread, 0), "
+            + "last_sender_id = CASE WHEN last_message_id IN (:removedIds) THEN :senderId ELSE last_sender_id END, "
+            + "last_message_type = CASE WHEN last_message_id IN (:removedIds) THEN :type ELSE last_message_type END, "
+            + "last_message_preview = CASE WHEN last_message_id IN (:removedIds) THEN :preview ELSE last_message_preview END, "
+            + "last_message_id = CASE WHEN last_message_id IN (:removedIds) THEN :id ELSE last_message_id END "
+            + "WHERE user_id = :userId AND peer_id = :peerId";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final MessageRepository messageRepository;
+    private final UnreadCountService unreadCountService;
+    private final TransactionTemplate newTransaction;
+
+    public ConversationSummaryService(NamedParameterJdbcTemplate jdbcTemplate,
+                                      MessageRepository messageRepository,
+                                      UnreadCountService unreadCountService,
+                                      PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageRepository = messageRepository;
+        this.unreadCountService = unreadCountService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Applies newly inserted messages: the newest one becomes the last message of both
+     * participants' rows, and each message the recipient has not read adds to their unread count.
+     */
+    public void recordMessages(Collection<Message> messages) {
+        Map<RowKey, RowUpdate> updates = new TreeMap<>(ROW_ORDER);
+        Set<String> unreadChanged = new HashSet<>();
+        for (Message message : messages) {
+            Long senderId = message.getSender().getId();
+            Long recipientId = message.getRecipient().getId();
+            boolean unread = !senderId.equals(recipientId) && message.getStatus() != MessageStatus.READ;
+            updates.computeIfAbsent(new RowKey(senderId, recipientId), key -> new RowUpdate()).add(message, false);
+            if (!senderId.equals(recipientId)) {
+                updates.computeIfAbsent(new RowKey(recipientId, senderId), key -> new RowUpdate()).add(message, unread);
+            }
+            if (unread) {
+                unreadChanged.add(message.getRecipient().getUsername());
+            }
+        }
+        updates.forEach(this::apply);
+        unreadChanged.forEach(unreadCountService::markChanged);
+    }
+
+    /**
+     * {@code count} messages from the peer have just been marked READ by the reader.
+     */
+    public void recordRead(User reader, Long peerId, int count) {
+        if (count <= 0 || reader.getId().equals(peerId)) {
+            return;
+        }
+        jdbcTemplate.update(READ_SQL, new MapSqlParameterSource()
+                .addValue("count", count)
+                .addValue("userId", reader.getId())
+                .addValue("peerId", peerId));
+        unreadCountService.markChanged(reader.getUsername());
+    }
+
+    /**
+     * The message has just been marked deleted (and flushed). Drops it from the recipient's unread
+     * count if it was unread, and where it was the last message, replaces it with the newest one
+     * still visible.
+     */
+    public void recordDeleted(Message message, MessageStatus statusBeforeDelete) {
+        Long senderId = message.getSender().getId();
+        Long recipientId = message.getRecipient().getId();
+        if (statusBeforeDelete != MessageStatus.READ) {
+            recordRead(message.getRecipient(), senderId, 1);
+        }
+
+        ChatMessageDto last = messageRepository.findConversationBefore(senderId, recipientId, Long.MAX_VALUE, 1)
+                .stream().findFirst().orElse(null);
+        Long lastSenderId = last == null ? null
+                : last.getSenderUsername().equals(message.getSender().getUsername()) ? senderId : recipientId;
+        for (RowKey row : rowsOf(senderId, recipientId)) {
+            jdbcTemplate.update(REPLACE_LAST_SQL, new MapSqlParameterSource()
+                    .addValue("id", last != null ? last.getId() : null, Types.BIGINT)
+                    .addValue("senderId", lastSenderId, Types.BIGINT)
+                    .addValue("type", last != null ? last.getType().name() : null, Types.VARCHAR)
+                    .addValue("preview", last != null ? preview(last.getType(), last.getContent()) : null, Types.VARCHAR)
+                    .addValue("userId", row.userId())
+                    .addValue("peerId", row.peerId())
+                    .addValue("deletedId", message.getId()));
+        }
+    }
+
+    /**
+     * The messages have just been deleted from the table (by expiry). Per conversation, unread
+     * ones leave their recipient's count and, where one of them was the last message, the newest
+     * message left takes its place; one update per summary row.
+     */
+    public void recordExpired(Collection<Message> messages) {
+        Map<RowKey, List<Message>> byConversation = new TreeMap<>(ROW_ORDER);
+        for (Message message : messages) {
+            if (!message.isDeleted()) {
+                Long senderId = message.getSender().getId();
+                Long recipientId = message.getRecipient().getId();
+                byConversation.computeIfAbsent(new RowKey(Math.min(senderId, recipientId), Math.max(senderId, recipientId)),
+                        key -> new ArrayList<>()).add(message);
+            }
+        }
+        Set<String> unreadChanged = new HashSet<>();
+        byConversation.forEach((conversation, removed) -> {
+            ChatMessageDto last = messageRepository.findConversationBefore(conversation.userId(), conversation.peerId(), Long.MAX_VALUE, 1)
+                    .stream().findFirst().orElse(null);
+            Message sample = removed.get(0);
+            Long lastSenderId = last == null ? null
+                    : last.getSenderUsername().equals(sample.getSender().getUsername()) ? sample.getSender().getId() : sample.getRecipient().getId();
+            List<Long> removedIds = removed.stream().map(Message::getId).toList();
+            for (RowKey row : rowsOf(conversation.userId(), conversation.peerId())) {
+                int unread = 0;
+                for (Message message : removed) {
+                    if (message.getStatus() != MessageStatus.READ && !row.userId().equals(row.peerId())
+                            && message.getRecipient().getId().equals(row.userId())) {
+                        unread++;
+                        unreadChanged.add(message.getRecipient().getUsername());
+                    }
+                }
+                jdbcTemplate.update(EXPIRE_SQL, new MapSqlParameterSource()
+                        .addValue("unread", unread)
+                        .addValue("removedIds", removedIds)
+                        .addValue("id", last != null ? last.getId() : null, Types.BIGINT)
+                        .addValue("senderId", lastSenderId, Types.BIGINT)
+                        .addValue("type", last != null ? last.getType().name() : null, Types.VARCHAR)
+                        .addValue("preview", last != null ? preview(last.getType(), last.getContent()) : null, Types.VARCHAR)
+                        .addValue("userId", row.userId())
+                        .addValue("peerId", row.peerId()));
+            }
+        });
+        unreadChanged.forEach(unreadCountService::markChanged);
+    }
+
+    private void apply(RowKey row, RowUpdate update) {
+        Message last = update.last;
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("unread", update.unread)
+                .addValue("id", last.getId())
+                .addValue("senderId", last.getSender().getId())
+                .addValue("type", last.getType().name())
+                .addValue("preview", preview(last.getType(), last.getContent()), Types.VARCHAR)
+                .addValue("at", last.getTimestamp())
+                .addValue("userId", row.userId())
+                .addValue("peerId", row.peerId());
+        if (jdbcTemplate.update(APPLY_MESSAGE_SQL, parameters) == 0) {
+            create(row, last.getTimestamp());
+            jdbcTemplate.update(APPLY_MESSAGE_SQL, parameters);
+        }
+    }
+
+    /**
+     * Creates the row of a first conversation in its own transaction, so that losing the race
+     * against another node creating it at the same time does not abort the caller's transaction.
+     */
+    private void create(RowKey row, LocalDateTime at) {
+        try {
+            newTransaction.executeWithoutResult(status -> jdbcTemplate.update(CREATE_SQL, new MapSqlParameterSource()
+                    .addValue("userId", row.userId())
+                    .addValue("peerId", row.peerId())
+                    .addValue("at", at)));
+        } catch (DataIntegrityViolationException e) {
+            // Created concurrently; the retried update applies to that row.
+        }
+    }
+
+    private static List<RowKey> rowsOf(Long userA, Long userB) {
+        if (userA.equals(userB)) {
+            return List.of(new RowKey(userA, userB));
+        }
+        return List.of(new RowKey(Math.min(userA, userB), Math.max(userA, userB)),
+                new RowKey(Math.max(userA, userB), Math.min(userA, userB)));
+    }
+
+    static String preview(MessageType type, String content) {
+        if (type != MessageType.TEXT || content == null) {
+            return null;
+        }
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH);
+    }
+
+    private record RowKey(Long userId, Long peerId) {
+    }
+
+    private static final class RowUpdate {
+        private Message last;
+        private int unread;
+
+        void add(Message message, boolean unreadByRowOwner) {
+            if (last == null || message.getId() > last.getId()) {
+                last = message;
+            }
+            if (unreadByRowOwner) {
+                unread++;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.MessageStatusBatchDto;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects delivery acknowledgements from recipients and applies them once per window: one
+ * transaction with bulk UPDATEs per (sender, recipient) pair, then one {@link MessageStatusBatchDto}
+ * per sender on {@code /queue/status} listing the messages that actually changed. Only SENT
+ * messages move to DELIVERED, so a late ack never downgrades a READ message. Acks of a pair whose
+ * transaction fails are queued again for the next window.
+ */
+@Service
+@Slf4j
+public class DeliveryAckService {
+
+    private static final Set<MessageStatus> SENT = EnumSet.of(MessageStatus.SENT);
+    private static final Set<MessageStatus> DELIVERED = EnumSet.of(MessageStatus.DELIVERED);
+
+    private final MessageRepository messageRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageWriteBehindService writeBehindService;
+    private final int maxIdsPerUpdate;
+
+    // Sets are only touched inside compute()/remove(), so a drained set is never written again.
+    private final Map<AckKey, Set<Long>> pending = new ConcurrentHashMap<>();
+
+    public DeliveryAckService(MessageRepository messageRepository,
+                              UserIdentityCache userIdentityCache,
+                              SimpMessagingTemplate messagingTemplate,
+                              TransactionTemplate transactionTemplate,
+                              RecentMessageCache recentMessageCache,
+                              MessageWriteBehindService writeBehindService,
+                              @Value("${app.delivery-ack.max-ids-per-update:500}") int maxIdsPerUpdate) {
+        this.messageRepository = messageRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.messagingTemplate = messagingTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recentMessageCache = recentMessageCache;
+        this.writeBehindService = writeBehindService;
+        this.maxIdsPerUpdate = maxIdsPerUpdate;
+    }
+
+    public void acknowledge(String recipientUsername, String senderUsername, Collection<Long> messageIds) {
+        if (senderUsername == null || messageIds == null || messageIds.isEmpty()) {
+            return;
+        }
+        pending.compute(new AckKey(senderUsername, recipientUsername), (key, ids) -> {
+            Set<Long> merged = ids != null ? ids : new HashSet<>();
+            merged.addAll(messageIds);
+            return merged;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.delivery-ack.window-ms:200}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<AckKey, Set<Long>> batch = new HashMap<>();
+        for (AckKey key : pending.keySet()) {
+            Set<Long> ids = pending.remove(key);
+            if (ids != null) {
+                batch.put(key, ids);
+            }
+        }
+
+        if (writeBehindService.isEnabled()) {
+            // Acks can arrive before the flusher has inserted the rows they refer to
+            try {
+                batch.values().stream().flatMap(Set::stream).max(Long::compare)
+                        .ifPresent(writeBehindService::awaitPersisted);
+            } catch (IllegalStateException e) {
+                log.warn("Delaying {} delivery ack pairs to the next window: {}", batch.size(), e.getMessage());
+                batch.forEach(this::requeue);
+                return;
+            }
+        }
+
+        Map<String, List<Long>> delivered = new HashMap<>();
+        batch.forEach((key, ids) -> {
+            List<Long> changed;
+            try {
+                changed = transactionTemplate.execute(status -> apply(key, ids));
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply {} delivery acks from {} to {}, retrying next window: {}",
+                        ids.size(), key.recipient(), key.sender(), e.getMessage());
+                requeue(key, ids);
+                return;
+            }
+            if (changed != null && !changed.isEmpty()) {
+                delivered.computeIfAbsent(key.sender(), sender -> new ArrayList<>()).addAll(changed);
+            }
+        });
+
+        delivered.forEach((sender, ids) -> messagingTemplate.convertAndSendToUser(
+                sender,
+                "/queue/status",
+                new MessageStatusBatchDto(ids, MessageStatus.DELIVERED)
+        ));
+    }
+
+    int pendingCount() {
+        return pending.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void requeue(AckKey key, Set<Long> ids) {
+        acknowledge(key.recipient(), key.sender(), ids);
+    }
+
+    /**
+     * Moves the pair's SENT messages among {@code ids} to DELIVERED and returns the IDs that changed.
+     */
+    private List<Long> apply(AckKey key, Set<Long> ids) {
+        Long senderId;
+        Long recipientId;
+        try {
+            senderId = userIdentityCache.get(key.sender()).id();
+            recipientId = userIdentityCache.get(key.recipient()).id();
+        } catch (UsernameNotFoundException e) {
+            log.warn("Ignoring {} delivery acks from {} for unknown sender {}", ids.size(), key.recipient(), key.sender());
+            return List.of();
+        }
+
+        List<Long> changed = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(Math.min(ids.size(), maxIdsPerUpdate));
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == maxIdsPerUpdate) {
+                changed.addAll(advance(chunk, senderId, recipientId));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            changed.addAll(advance(chunk, senderId, recipientId));
+        }
+        return changed;
+    }
+
+    private List<Long> advance(List<Long> messageIds, Long senderId, Long recipientId) {
+        List<Long> candidates = messageRepository.findIdsWithStatus(messageIds, senderId, recipientId, SENT);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        int updated = messageRepository.advanceStatus(candidates, senderId, recipientId, SENT, MessageStatus.DELIVERED);
+        List<Long> changed = updated == candidates.size()
+                ? candidates
+                // Some were read in between; keep only those this update moved
+                : messageRepository.findIdsWithStatus(candidates, senderId, recipientId, DELIVERED);
+        Set<Long> changedIds = Set.copyOf(changed);
+        recentMessageCache.recordStatus(senderId, recipientId, dto -> changedIds.contains(dto.getId()),
+                SENT, MessageStatus.DELIVERED);
+        return changed;
+    }
+
+    private record AckKey(String sender, String recipient) {
+    }
+}
@@ -0,0 +1,221 @@
+package com.nexus.service;
+
+import com.nexus.cluster.ClusterRouter;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.MessageStatusUpdateDto;
+import com.nexus.model.entity.MessageStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers messages flagged {@code ephemeral} without writing them anywhere. A recipient with a
+ * live /user/queue/messages subscription (here, or a session on another node) gets the message
+ * straight away; otherwise it waits in an {@link EphemeralMessageStore} on this node until the
+ * recipient subscribes or {@code ttl-seconds} pass. The sender receives the message back with
+ * status DELIVERED, or SENT followed by a DELIVERED status update once a held message goes out.
+ * A message that cannot be held, or whose TTL passes, is sent back to the sender with
+ * {@code deleted} set.
+ * <p>
+ * Ephemeral messages get negative, node-local IDs so they never collide with stored ones. The
+ * only lookups are the cached user identities; nothing touches the database on a warm cache.
+ * <p>
+ * Registered on the client inbound channel to learn when a subscription is actually in place:
+ * {@code SessionSubscribeEvent} is published before the broker has registered it.
+ */
+@Service
+public class EphemeralMessageService implements ExecutorChannelInterceptor {
+
+    private static final String MESSAGES_DESTINATION = "/queue/messages";
+    private static final String USER_PREFIX = "/user";
+
+    private final UserIdentityCache userIdentityCache;
+    private final OutboundMessageSender outboundMessageSender;
+    private final ClusterRouter clusterRouter;
+    private final EphemeralMessageStore store;
+
+    /** Username to the "sessionId:subscriptionId" of each local /queue/messages subscription. */
+    private final Map<String, Set<String>> subscribers = new ConcurrentHashMap<>();
+    // Counts down from a time-based seed, so IDs from an earlier run are not reused in practice
+    private final AtomicLong nextId = new AtomicLong(-System.currentTimeMillis() * 1000);
+
+    private final Counter delivered;
+    private final Counter held;
+    private final Counter rejected;
+    private final Counter expired;
+
+    public EphemeralMessageService(UserIdentityCache userIdentityCache,
+                                   @Lazy OutboundMessageSender outboundMessageSender,
+                                   ClusterRouter clusterRouter,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.ephemeral.ttl-seconds:300}") long ttlSeconds,
+                                   @Value("${app.ephemeral.max-messages:100000}") int maxMessages,
+                                   @Value("${app.ephemeral.max-per-recipient:500}") int maxPerRecipient) {
+        this.userIdentityCache = userIdentityCache;
+        this.outboundMessageSender = outboundMessageSender;
+        this.clusterRouter = clusterRouter;
+        this.store = new EphemeralMessageStore(maxMessages, maxPerRecipient, TimeUnit.SECONDS.toNanos(ttlSeconds));
+
+        this.delivered = meterRegistry.counter("message.ephemeral", "outcome", "delivered");
+        this.held = meterRegistry.counter("message.ephemeral", "outcome", "held");
+        this.rejected = meterRegistry.counter("message.ephemeral", "outcome", "rejected");
+        this.expired = meterRegistry.counter("message.ephemeral", "outcome", "expired");
+        Gauge.builder("message.ephemeral.pending", store, EphemeralMessageStore::size)
+                .description("Ephemeral messages waiting for their recipient")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the message from {@code senderUsername}, the authenticated user; the sender named in
+     * the request is ignored.
+     */
+    public ChatMessageDto send(String senderUsername, ChatMessageDto request) {
+        if (request.getType() == null) {
+            throw new IllegalArgumentException("Message type is required");
+        }
+        String sender = userIdentityCache.get(senderUsername).username();
+        String recipient = userIdentityCache.get(request.getRecipientUsername()).username();
+
+        ChatMessageDto message = new ChatMessageDto(nextId.getAndDecrement(), sender, recipient,
+                request.getContent(), request.getType(), MessageStatus.SENT, LocalDateTime.now(), false);
+        message.setTempId(request.getTempId());
+        message.setEphemeral(true);
+
+        if (isSubscribedLocally(recipient) || clusterRouter.hasRemoteSessions(recipient)) {
+            message.setStatus(MessageStatus.DELIVERED);
+            outboundMessageSender.sendToUsers(List.of(recipient, sender), MESSAGES_DESTINATION, message);
+            delivered.increment();
+            return message;
+        }
+        if (!store.hold(message, System.nanoTime())) {
+            message.setDeleted(true);
+            outboundMessageSender.sendToUser(sender, MESSAGES_DESTINATION, outboundMessageSender.encode(message));
+            rejected.increment();
+            return message;
+        }
+        held.increment();
+        outboundMessageSender.sendToUser(sender, MESSAGES_DESTINATION, outboundMessageSender.encode(message));
+        // The recipient may have subscribed after the check above and drained before hold()
+        if (isSubscribedLocally(recipient)) {
+            deliverHeld(recipient);
+        }
+        return message;
+    }
+
+    @Scheduled(fixedDelayString = "${app.ephemeral.purge-interval-ms:5000}")
+    public void purgeExpired() {
+        store.purgeExpired(System.nanoTime(), this::expire);
+    }
+
+    int pendingCount() {
+        return store.size();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        Principal user = SimpMessageHeaderAccessor.getUser(headers);
+        if (user != null && SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.UNSUBSCRIBE) {
+            // Before dispatch, so nothing is sent to a subscription that is about to go away
+            removeSubscriber(user.getName(), subscriptionKey(headers));
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        MessageHeaders headers = message.getHeaders();
+        Principal user = SimpMessageHeaderAccessor.getUser(headers);
+        if (ex != null || user == null || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.SUBSCRIBE
+                || !registersMessagesSubscription(handler, SimpMessageHeaderAccessor.getDestination(headers), user.getName())) {
+            return;
+        }
+        String username = user.getName();
+        subscribers.computeIfAbsent(username, key -> ConcurrentHashMap.newKeySet()).add(subscriptionKey(headers));
+        deliverHeld(username);
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user == null) {
+            return;
+        }
+        String prefix = event.getSessionId() + ":";
+        subscribers.computeIfPresent(user.getName(), (username, keys) -> {
+            keys.removeIf(key -> key.startsWith(prefix));
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private void deliverHeld(String username) {
+        for (ChatMessageDto message : store.drain(username, System.nanoTime(), this::expire)) {
+            message.setStatus(MessageStatus.DELIVERED);
+            outboundMessageSender.sendToUser(username, MESSAGES_DESTINATION, outboundMessageSender.encode(message));
+            outboundMessageSender.sendToUser(message.getSenderUsername(), "/queue/status",
+                    outboundMessageSender.encode(new MessageStatusUpdateDto(message.getId(), MessageStatus.DELIVERED)));
+            delivered.increment();
+        }
+    }
+
+    private void expire(ChatMessageDto message) {
+        expired.increment();
+        message.setDeleted(true);
+        outboundMessageSender.sendToUser(message.getSenderUsername(), MESSAGES_DESTINATION,
+                outboundMessageSender.encode(message));
+    }
+
+    private boolean isSubscribedLocally(String username) {
+        return subscribers.containsKey(username);
+    }
+
+    private void removeSubscriber(String username, String key) {
+        subscribers.computeIfPresent(username, (name, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * "/user/queue/messages" is resolved to a per-session queue by the user destination handler;
+     * "/user/{own name}/queue/messages" is subscribed to as is by the simple broker.
+     */
+    private static boolean registersMessagesSubscription(MessageHandler handler, String destination, String username) {
+        if (destination == null) {
+            return false;
+        }
+        if (handler instanceof UserDestinationMessageHandler) {
+            return destination.equals(USER_PREFIX + MESSAGES_DESTINATION);
+        }
+        return handler instanceof SimpleBrokerMessageHandler
+                && destination.equals(USER_PREFIX + "/" + username + MESSAGES_DESTINATION);
+    }
+
+    private static String subscriptionKey(MessageHeaders headers) {
+        return SimpMessageHeaderAccessor.getSessionId(headers) + ":" + SimpMessageHeaderAccessor.getSubscriptionId(headers);
+    }
+}
@@ -0,0 +1,100 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.ChatMessageDto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ephemeral messages waiting for their recipient to come online, kept only in memory. Bounded
+ * both in total and per recipient; a message that does not fit is refused rather than evicting
+ * an older one, so the sender learns about it while it can still react.
+ */
+final class EphemeralMessageStore {
+
+    private record Held(ChatMessageDto message, long expiresAtNanos) {
+    }
+
+    private final Map<String, Deque<Held>> byRecipient = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxMessages;
+    private final int maxPerRecipient;
+    private final long ttlNanos;
+
+    EphemeralMessageStore(int maxMessages, int maxPerRecipient, long ttlNanos) {
+        this.maxMessages = maxMessages;
+        this.maxPerRecipient = maxPerRecipient;
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * @return false if the store or the recipient's queue is full
+     */
+    boolean hold(ChatMessageDto message, long nowNanos) {
+        if (size.incrementAndGet() > maxMessages) {
+            size.decrementAndGet();
+            return false;
+        }
+        boolean[] held = new boolean[1];
+        byRecipient.compute(message.getRecipientUsername(), (recipient, queue) -> {
+            Deque<Held> target = queue != null ? queue : new ArrayDeque<>();
+            if (target.size() < maxPerRecipient) {
+                target.addLast(new Held(message, nowNanos + ttlNanos));
+                held[0] = true;
+            }
+            return target.isEmpty() ? null : target;
+        });
+        if (!held[0]) {
+            size.decrementAndGet();
+        }
+        return held[0];
+    }
+
+    /**
+     * Removes and returns the recipient's unexpired messages, oldest first, handing expired ones
+     * to {@code onExpired}.
+     */
+    List<ChatMessageDto> drain(String recipient, long nowNanos, Consumer<ChatMessageDto> onExpired) {
+        Deque<Held> queue = byRecipient.remove(recipient);
+        if (queue == null) {
+            return List.of();
+        }
+        // Once removed from the map no compute() can touch the deque any more
+        List<ChatMessageDto> messages = new ArrayList<>(queue.size());
+        List<ChatMessageDto> expired = new ArrayList<>();
+        for (Held held : queue) {
+            (held.expiresAtNanos() - nowNanos > 0 ? messages : expired).add(held.message());
+        }
+        size.addAndGet(-queue.size());
+        expired.forEach(onExpired);
+        return messages;
+    }
+
+    /**
+     * Drops messages whose TTL has passed, handing each to {@code onExpired}.
+     */
+    int purgeExpired(long nowNanos, Consumer<ChatMessageDto> onExpired) {
+        List<ChatMessageDto> expired = new ArrayList<>();
+        for (String recipient : byRecipient.keySet()) {
+            byRecipient.computeIfPresent(recipient, (key, queue) -> {
+                while (!queue.isEmpty() && queue.peekFirst().expiresAtNanos() - nowNanos <= 0) {
+                    expired.add(queue.pollFirst().message());
+                }
+                return queue.isEmpty() ? null : queue;
+            });
+        }
+        size.addAndGet(-expired.size());
+        expired.forEach(onExpired);
+        return expired.size();
+    }
+
+    int size() {
+        return size.get();
+    }
+}
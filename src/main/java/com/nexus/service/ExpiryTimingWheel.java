@@ -0,0 +1,63 @@
+package com.nexus.service;
+
+/**
+ * Number of messages due in each of the next {@code slots} seconds, in a ring indexed by epoch
+ * second. {@link #advance} collects everything due up to a given second; times past the horizon
+ * are not accepted and are loaded again once the horizon reaches them. Guarded by its own monitor.
+ */
+class ExpiryTimingWheel {
+
+    private final long[] counts;
+    /** The first second not collected yet. */
+    private long cursor;
+    private long scheduled;
+
+    ExpiryTimingWheel(int slots, long nowSecond) {
+        this.counts = new long[slots];
+        this.cursor = nowSecond;
+    }
+
+    /**
+     * Adds one message due at {@code epochSecond}; one already overdue is due at the next advance.
+     * Returns {@code false} if the second lies beyond the horizon.
+     */
+    synchronized boolean schedule(long epochSecond) {
+        long second = Math.max(epochSecond, cursor);
+        if (second >= cursor + counts.length) {
+            return false;
+        }
+        counts[slot(second)]++;
+        scheduled++;
+        return true;
+    }
+
+    /**
+     * Collects and clears everything due up to and including {@code nowSecond}.
+     */
+    synchronized long advance(long nowSecond) {
+        long due = 0;
+        long until = Math.min(nowSecond + 1, cursor + counts.length);
+        for (long second = cursor; second < until; second++) {
+            due += counts[slot(second)];
+            counts[slot(second)] = 0;
+        }
+        cursor = Math.max(cursor, nowSecond + 1);
+        scheduled -= due;
+        return due;
+    }
+
+    /**
+     * The first second not accepted by {@link #schedule}.
+     */
+    synchronized long horizon() {
+        return cursor + counts.length;
+    }
+
+    synchronized long scheduled() {
+        return scheduled;
+    }
+
+    private int slot(long second) {
+        return (int) Math.floorMod(second, (long) counts.length);
+    }
+}
@@ -0,0 +1,275 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.MessageType;
+import com.nexus.model.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes messages when their {@code expiresAt} passes, to the second.
+ * <p>
+ * Upcoming expiry times are counted in an {@link ExpiryTimingWheel} covering the next
+ * {@code wheel-seconds}: filled from the database as the horizon moves and from this node's own
+ * writes. Each {@code tick-ms} the wheel is advanced; when something is due (or every
+ * {@code sweep-interval-ms}, to catch other nodes' writes) the due rows are deleted in chunks of
+ * {@code chunk-size}, each in its own transaction, at most {@code max-chunks-per-tick} per tick.
+ * The rows are locked while a chunk is processed, so two nodes never expire the same message.
+ * Both participants receive the message on /user/queue/messages with {@code deleted} set.
+ */
+@Service
+@Slf4j
+public class MessageExpiryService implements SmartLifecycle {
+
+    static final String DUE_SQL = "SELECT id, sender_id, recipient_id, type, status, timestamp, expires_at, deleted "
+            + "FROM messages WHERE expires_at <= ? ORDER BY expires_at LIMIT ? FOR UPDATE";
+
+    private static final String BACKLOG_SQL = "SELECT COUNT(*) FROM messages WHERE expires_at <= ?";
+    private static final String UPCOMING_SQL = "SELECT expires_at FROM messages WHERE expires_at >= ? AND expires_at < ?";
+    private static final String USERNAMES_SQL = "SELECT id, username FROM users WHERE id IN (:ids)";
+    private static final String DELETE_SQL = "DELETE FROM messages WHERE id IN (:ids)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConversationSummaryService conversationSummaryService;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
+    private final OutboundMessageSender outboundMessageSender;
+    private final int chunkSize;
+    private final int maxChunksPerTick;
+    private final long sweepIntervalNanos;
+    private final ExpiryTimingWheel wheel;
+    private final long loadStepSeconds;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final Counter expired;
+    private final Timer lag;
+
+    /** Expiry times before this second have been loaded into the wheel from the database. */
+    private volatile long loadedUntil;
+    private long nextSweepNanos;
+    private boolean behind;
+    private volatile boolean running;
+
+    public MessageExpiryService(JdbcTemplate jdbcTemplate,
+                                NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ConversationSummaryService conversationSummaryService,
+                                RecentMessageCache recentMessageCache,
+                                MessageSearchIndex messageSearchIndex,
+                                OutboundMessageSender outboundMessageSender,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.expiry.chunk-size:500}") int chunkSize,
+                                @Value("${app.expiry.max-chunks-per-tick:20}") int maxChunksPerTick,
+                                @Value("${app.expiry.wheel-seconds:3600}") int wheelSeconds,
+                                @Value("${app.expiry.sweep-interval-ms:60000}") long sweepIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.conversationSummaryService = conversationSummaryService;
+        this.recentMessageCache = recentMessageCache;
+        this.messageSearchIndex = messageSearchIndex;
+        this.outboundMessageSender = outboundMessageSender;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerTick = maxChunksPerTick;
+        this.sweepIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sweepIntervalMs);
+        this.loadedUntil = epochSecond(LocalDateTime.now());
+        this.wheel = new ExpiryTimingWheel(wheelSeconds, loadedUntil);
+        this.loadStepSeconds = Math.max(1, wheelSeconds / 60);
+        this.nextSweepNanos = System.nanoTime();
+
+        this.expired = meterRegistry.counter("message.expiry.deleted");
+        this.lag = Timer.builder("message.expiry.lag")
+                .description("Time from expiresAt until the message was deleted")
+                .register(meterRegistry);
+        Gauge.builder("message.expiry.backlog", backlog, AtomicLong::get)
+                .description("Messages past their expiry time that are not deleted yet")
+                .register(meterRegistry);
+        Gauge.builder("message.expiry.scheduled", wheel, ExpiryTimingWheel::scheduled)
+                .description("Messages due within the timing wheel's horizon")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules newly saved messages that expire within the range already loaded from the
+     * database; later ones are picked up when the horizon reaches them.
+     */
+    public void recordSaved(Collection<Message> messages) {
+        List<Long> seconds = new ArrayList<>();
+        for (Message message : messages) {
+            if (message.getExpiresAt() != null) {
+                seconds.add(epochSecond(message.getExpiresAt()));
+            }
+        }
+        if (!seconds.isEmpty()) {
+            TransactionCallbacks.afterCommit(() ->
+                    seconds.stream().filter(second -> second < loadedUntil).forEach(wheel::schedule));
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.expiry.tick-ms:1000}")
+    public synchronized void tick() {
+        if (!running) {
+            return;
+        }
+        long now = epochSecond(LocalDateTime.now());
+        boolean due = wheel.advance(now) > 0;
+        long horizon = wheel.horizon();
+        if (horizon - loadedUntil >= loadStepSeconds) {
+            loadUpcoming(loadedUntil, horizon);
+        }
+        if (due || behind || System.nanoTime() - nextSweepNanos >= 0) {
+            expireDue();
+        }
+    }
+
+    /**
+     * Deletes due messages, up to {@code max-chunks-per-tick} chunks; returns how many were deleted.
+     */
+    public synchronized int expireDue() {
+        LocalDateTime now = LocalDateTime.now();
+        nextSweepNanos = System.nanoTime() + sweepIntervalNanos;
+        Long overdue = jdbcTemplate.queryForObject(BACKLOG_SQL, Long.class, now);
+        backlog.set(overdue != null ? overdue : 0);
+        if (backlog.get() == 0) {
+            behind = false;
+            return 0;
+        }
+
+        int total = 0;
+        int deleted = 0;
+        for (int chunk = 0; chunk < maxChunksPerTick; chunk++) {
+            Integer count = transactionTemplate.execute(status -> expireChunk(now));
+            deleted = count != null ? count : 0;
+            total += deleted;
+            backlog.set(Math.max(0, backlog.get() - deleted));
+            if (deleted < chunkSize) {
+                break;
+            }
+        }
+        behind = deleted == chunkSize;
+        if (behind) {
+            log.warn("Message expiry is behind: {} messages still due", backlog.get());
+        }
+        return total;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private int expireChunk(LocalDateTime now) {
+        List<Message> due = jdbcTemplate.query(DUE_SQL, MessageExpiryService::dueMessage, now, chunkSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        Set<Long> userIds = new HashSet<>();
+        List<Long> ids = new ArrayList<>(due.size());
+        for (Message message : due) {
+            userIds.add(message.getSender().getId());
+            userIds.add(message.getRecipient().getId());
+            ids.add(message.getId());
+        }
+        Map<Long, String> usernames = new HashMap<>();
+        namedParameterJdbcTemplate.query(USERNAMES_SQL, Map.of("ids", userIds),
+                (RowCallbackHandler) rs -> usernames.put(rs.getLong("id"), rs.getString("username")));
+        for (Message message : due) {
+            message.getSender().setUsername(usernames.get(message.getSender().getId()));
+            message.getRecipient().setUsername(usernames.get(message.getRecipient().getId()));
+        }
+
+        namedParameterJdbcTemplate.update(DELETE_SQL, Map.of("ids", ids));
+        conversationSummaryService.recordExpired(due);
+        for (Message message : due) {
+            recentMessageCache.recordDeleted(message);
+            messageSearchIndex.recordDeleted(message);
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            LocalDateTime deletedAt = LocalDateTime.now();
+            for (Message message : due) {
+                lag.record(Duration.between(message.getExpiresAt(), deletedAt).abs());
+                publish(message);
+            }
+            expired.increment(due.size());
+        });
+        return due.size();
+    }
+
+    private void publish(Message message) {
+        ChatMessageDto event = new ChatMessageDto(message.getId(), message.getSender().getUsername(),
+                message.getRecipient().getUsername(), null, message.getType(), message.getStatus(),
+                message.getTimestamp(), true);
+        outboundMessageSender.sendToUsers(List.of(message.getRecipient().getUsername(), message.getSender().getUsername()),
+                "/queue/messages", event);
+    }
+
+    private void loadUpcoming(long fromSecond, long untilSecond) {
+        jdbcTemplate.query(UPCOMING_SQL, (RowCallbackHandler) rs -> wheel.schedule(epochSecond(rs.getTimestamp(1).toLocalDateTime())),
+                LocalDateTime.ofEpochSecond(fromSecond, 0, ZoneOffset.UTC),
+                LocalDateTime.ofEpochSecond(untilSecond, 0, ZoneOffset.UTC));
+        loadedUntil = untilSecond;
+    }
+
+    private static Message dueMessage(ResultSet rs, int rowNum) throws SQLException {
+        Message message = new Message();
+        message.setId(rs.getLong("id"));
+        message.setSender(user(rs.getLong("sender_id")));
+        message.setRecipient(user(rs.getLong("recipient_id")));
+        message.setType(MessageType.valueOf(rs.getString("type")));
+        message.setStatus(MessageStatus.valueOf(rs.getString("status")));
+        message.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        message.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
+        message.setDeleted(rs.getBoolean("deleted"));
+        return message;
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
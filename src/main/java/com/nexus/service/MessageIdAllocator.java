@@ -0,0 +1,53 @@
+package com.nexus.service;
+
+import com.nexus.model.entity.Message;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out message IDs without inserting a row. Each sequence call reserves a block of
+ * {@link Message#ID_ALLOCATION_SIZE} IDs starting at the returned value (pooled-lo semantics),
+ * which is the same contract Hibernate uses for the entity, so both paths never collide.
+ */
+@Component
+public class MessageIdAllocator {
+
+    private static final String SEQUENCE_NAME = "message_id_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextValueSql;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long next = 1;
+    private long upperBound = 0;
+
+    public MessageIdAllocator(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextValueSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect()
+                .getSequenceSupport()
+                .getSequenceNextValString(SEQUENCE_NAME);
+    }
+
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next > upperBound) {
+                Long blockStart = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+                if (blockStart == null) {
+                    throw new IllegalStateException("Sequence " + SEQUENCE_NAME + " returned no value");
+                }
+                next = blockStart;
+                upperBound = blockStart + Message.ID_ALLOCATION_SIZE - 1;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
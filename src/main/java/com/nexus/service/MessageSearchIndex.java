@@ -0,0 +1,483 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.MessageSearchHitDto;
+import com.nexus.model.dto.MessageSearchPageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full-text index of TEXT messages, kept in Lucene segment files under {@code index-dir} (in
+ * memory when it is empty).
+ * <p>
+ * Saves and deletions are applied once their transaction commits and become searchable within
+ * {@code refresh-interval-ms}; the index is committed to disk every {@code commit-interval-ms}.
+ * On startup a missing index is rebuilt from the database, and an existing one catches up with
+ * messages newer than the last one it committed. A full rebuild (on {@code rebuild-cron} or from
+ * the admin API) re-indexes every live message and then drops documents it did not see, which
+ * also removes deletions the index missed. Each node indexes its own writes; with several nodes
+ * schedule the rebuild to pick up the others'.
+ * <p>
+ * Only messages still in the database are searchable: archived messages are removed when they are
+ * archived, and a rebuild does not read the archive.
+ */
+@Component
+@Slf4j
+public class MessageSearchIndex implements SmartLifecycle {
+
+    private static final String ID = "id";
+    private static final String PARTICIPANT = "participant";
+    private static final String CONVERSATION = "conversation";
+    private static final String CONTENT = "content";
+    private static final String SENDER = "sender";
+    private static final String RECIPIENT = "recipient";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String ID_ORDER = "idOrder";
+    private static final String EXPIRES_AT = "expiresAt";
+    private static final String GENERATION = "generation";
+    private static final String MAX_MESSAGE_ID = "maxMessageId";
+
+    private static final Sort RELEVANCE_THEN_RECENCY = new Sort(SortField.FIELD_SCORE,
+            new SortField(TIMESTAMP, SortField.Type.LONG, true), new SortField(ID_ORDER, SortField.Type.LONG, true));
+
+    private static final String REINDEX_SQL = "SELECT m.id, m.sender_id, m.recipient_id, s.username AS sender_username, "
+            + "r.username AS recipient_username, m.content, m.timestamp, m.expires_at FROM messages m "
+            + "JOIN users s ON s.id = m.sender_id JOIN users r ON r.id = m.recipient_id "
+            + "WHERE m.id > ? AND m.type = 'TEXT' AND m.deleted = false ORDER BY m.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final String indexDir;
+    private final int rebuildChunkSize;
+    private final int maxResults;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Timer searchTime;
+    private final Counter indexed;
+
+    private final AtomicLong maxIndexedId = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    /** Removed while a rebuild runs; it may have read them before, so they are removed again after it. */
+    private final Set<Long> removedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private volatile long generation = System.currentTimeMillis();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean running;
+
+    public MessageSearchIndex(JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search.enabled:true}") boolean enabled,
+                              @Value("${app.search.index-dir:./data/search-index}") String indexDir,
+                              @Value("${app.search.rebuild-chunk-size:2000}") int rebuildChunkSize,
+                              @Value("${app.search.max-results:1000}") int maxResults) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.indexDir = indexDir;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.maxResults = maxResults;
+        this.searchTime = Timer.builder("message.search")
+                .description("Full-text message search latency")
+                .register(meterRegistry);
+        this.indexed = meterRegistry.counter("message.search.indexed");
+        Gauge.builder("message.search.documents", this, MessageSearchIndex::documentCount)
+                .description("Messages in the full-text index")
+                .register(meterRegistry);
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * One page of the user's TEXT messages (sent or received, optionally only with {@code peerId})
+     * containing every term of {@code text}, best match first and newest first among equals.
+     */
+    public MessageSearchPageDto search(Long userId, Long peerId, String text, int page, int size) {
+        List<String> terms = analyze(text);
+        if (!running || terms.isEmpty()) {
+            return new MessageSearchPageDto(List.of(), false);
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        terms.forEach(term -> query.add(new TermQuery(new Term(CONTENT, term)), BooleanClause.Occur.MUST));
+        query.add(new TermQuery(new Term(PARTICIPANT, userId.toString())), BooleanClause.Occur.FILTER);
+        if (peerId != null) {
+            query.add(new TermQuery(new Term(CONVERSATION, conversation(userId, peerId))), BooleanClause.Occur.FILTER);
+        }
+        query.add(LongPoint.newRangeQuery(EXPIRES_AT, epochMillis(LocalDateTime.now()), Long.MAX_VALUE), BooleanClause.Occur.FILTER);
+
+        int from = page * size;
+        return searchTime.record(() -> {
+            IndexSearcher searcher = null;
+            try {
+                searcher = searcherManager.acquire();
+                TopFieldDocs top = searcher.search(query.build(), from + size + 1, RELEVANCE_THEN_RECENCY, true);
+                StoredFields stored = searcher.storedFields();
+                List<MessageSearchHitDto> hits = new ArrayList<>(size);
+                for (int i = from; i < Math.min(top.scoreDocs.length, from + size); i++) {
+                    hits.add(toHit(stored.document(top.scoreDocs[i].doc), top.scoreDocs[i]));
+                }
+                return new MessageSearchPageDto(hits, top.scoreDocs.length > from + size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                release(searcher);
+            }
+        });
+    }
+
+    public void recordSaved(Collection<Message> messages) {
+        if (!enabled) {
+            return;
+        }
+        List<Document> documents = new ArrayList<>(messages.size());
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message.getType() == MessageType.TEXT && !message.isDeleted()) {
+                documents.add(document(message.getId(), message.getSender().getId(), message.getRecipient().getId(),
+                        message.getSender().getUsername(), message.getRecipient().getUsername(),
+                        message.getContent(), message.getTimestamp(), message.getExpiresAt()));
+                ids.add(message.getId());
+            }
+        }
+        if (!documents.isEmpty()) {
+            TransactionCallbacks.afterCommit(() -> {
+                for (int i = 0; i < documents.size(); i++) {
+                    index(ids.get(i), documents.get(i));
+                }
+            });
+        }
+    }
+
+    public void recordDeleted(Message message) {
+        if (!enabled) {
+            return;
+        }
+        Long messageId = message.getId();
+        TransactionCallbacks.afterCommit(() -> remove(List.of(messageId)));
+    }
+
+    /**
+     * Removes messages that are no longer in the database, such as archived ones, right away.
+     */
+    public void remove(Collection<Long> messageIds) {
+        if (!running || messageIds.isEmpty()) {
+            return;
+        }
+        // Recorded before the delete, so a rebuild that re-adds one afterwards still sees it
+        if (rebuilding.get()) {
+            removedDuringRebuild.addAll(messageIds);
+        }
+        try {
+            writer.deleteDocuments(ids(messageIds));
+        } catch (IOException e) {
+            log.warn("Failed to remove {} messages from the search index: {}", messageIds.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a full rebuild in the background unless one is already running.
+     */
+    @Scheduled(cron = "${app.search.rebuild-cron:-}")
+    public void rebuildAsync() {
+        if (!running || rebuilding.get()) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "messageSearchRebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Re-indexes every live TEXT message, then deletes the documents that were neither re-indexed
+     * nor written since the rebuild started. Messages removed meanwhile are removed again at the
+     * end, in case the rebuild read them first. Returns false if a rebuild was already running.
+     */
+    public boolean rebuild() {
+        if (!running || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long started = System.nanoTime();
+            long rebuildGeneration = Math.max(System.currentTimeMillis(), generation + 1);
+            generation = rebuildGeneration;
+            long count = reindexAfter(0L);
+            writer.deleteDocuments(LongPoint.newRangeQuery(GENERATION, Long.MIN_VALUE, rebuildGeneration - 1));
+            if (!removedDuringRebuild.isEmpty()) {
+                writer.deleteDocuments(ids(List.copyOf(removedDuringRebuild)));
+            }
+            commit();
+            refresh();
+            log.info("Rebuilt the message search index: {} messages in {} ms", count, (System.nanoTime() - started) / 1_000_000);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Message search index rebuild failed", e);
+            return false;
+        } finally {
+            removedDuringRebuild.clear();
+            rebuilding.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.refresh-interval-ms:500}")
+    public void refresh() {
+        if (!running) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            log.warn("Failed to refresh the message search index: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.commit-interval-ms:30000}")
+    public void commit() {
+        if (!running || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            writer.setLiveCommitData(Map.of(MAX_MESSAGE_ID, Long.toString(maxIndexedId.get())).entrySet());
+            writer.commit();
+        } catch (IOException e) {
+            log.warn("Failed to commit the message search index: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        try {
+            directory = StringUtils.hasText(indexDir) ? FSDirectory.open(Path.of(indexDir)) : new ByteBuffersDirectory();
+            boolean existed = DirectoryReader.indexExists(directory);
+            writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+            searcherManager = new SearcherManager(writer, null);
+            if (existed && writer.getLiveCommitData() != null) {
+                writer.getLiveCommitData().forEach(entry -> {
+                    if (MAX_MESSAGE_ID.equals(entry.getKey())) {
+                        maxIndexedId.set(Long.parseLong(entry.getValue()));
+                    }
+                });
+            }
+            running = true;
+            if (existed) {
+                catchUpAsync(maxIndexedId.get());
+            } else {
+                rebuildAsync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the message search index at " + indexDir, e);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        commit();
+        running = false;
+        try {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the message search index: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void catchUpAsync(long afterId) {
+        Thread thread = new Thread(() -> {
+            try {
+                long count = reindexAfter(afterId);
+                if (count > 0) {
+                    log.info("Indexed {} messages newer than the search index", count);
+                }
+            } catch (RuntimeException e) {
+                log.error("Message search index catch-up failed", e);
+            }
+        }, "messageSearchCatchUp");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private long reindexAfter(long afterId) {
+        long count = 0;
+        long lastId = afterId;
+        while (running) {
+            long[] last = {lastId};
+            int rows = jdbcTemplate.query(REINDEX_SQL, (ResultSet rs) -> {
+                int read = 0;
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    index(id, document(rs));
+                    last[0] = id;
+                    read++;
+                }
+                return read;
+            }, lastId, rebuildChunkSize);
+            count += rows;
+            lastId = last[0];
+            if (rows < rebuildChunkSize) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private void index(long id, Document document) {
+        if (!running) {
+            return;
+        }
+        try {
+            document.add(new LongPoint(GENERATION, generation));
+            writer.updateDocument(new Term(ID, Long.toString(id)), document);
+            maxIndexedId.accumulateAndGet(id, Math::max);
+            indexed.increment();
+        } catch (IOException e) {
+            log.warn("Failed to index message {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static Term[] ids(Collection<Long> messageIds) {
+        return messageIds.stream().map(id -> new Term(ID, id.toString())).toArray(Term[]::new);
+    }
+
+    private static Document document(ResultSet rs) throws SQLException {
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        return document(rs.getLong("id"), rs.getLong("sender_id"), rs.getLong("recipient_id"),
+                rs.getString("sender_username"), rs.getString("recipient_username"), rs.getString("content"),
+                rs.getTimestamp("timestamp").toLocalDateTime(), expiresAt != null ? expiresAt.toLocalDateTime() : null);
+    }
+
+    private static Document document(long id, long senderId, long recipientId, String senderUsername,
+                                     String recipientUsername, String content, LocalDateTime timestamp,
+                                     LocalDateTime expiresAt) {
+        Document document = new Document();
+        document.add(new StringField(ID, Long.toString(id), Field.Store.YES));
+        document.add(new NumericDocValuesField(ID_ORDER, id));
+        document.add(new StringField(PARTICIPANT, Long.toString(senderId), Field.Store.NO));
+        document.add(new StringField(PARTICIPANT, Long.toString(recipientId), Field.Store.NO));
+        document.add(new StringField(CONVERSATION, conversation(senderId, recipientId), Field.Store.NO));
+        document.add(new TextField(CONTENT, content != null ? content : "", Field.Store.YES));
+        document.add(new StoredField(SENDER, senderUsername));
+        document.add(new StoredField(RECIPIENT, recipientUsername));
+        document.add(new NumericDocValuesField(TIMESTAMP, epochMillis(timestamp)));
+        document.add(new StoredField(TIMESTAMP, epochMillis(timestamp)));
+        document.add(new LongPoint(EXPIRES_AT, expiresAt != null ? epochMillis(expiresAt) : Long.MAX_VALUE));
+        return document;
+    }
+
+    private static MessageSearchHitDto toHit(Document document, ScoreDoc scoreDoc) {
+        return new MessageSearchHitDto(
+                Long.parseLong(document.get(ID)),
+                document.get(SENDER),
+                document.get(RECIPIENT),
+                document.get(CONTENT),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(document.getField(TIMESTAMP).numericValue().longValue()), ZoneOffset.UTC),
+                scoreDoc.score);
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (!StringUtils.hasText(text)) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(CONTENT, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher != null) {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException e) {
+                log.warn("Failed to release a search index reader: {}", e.getMessage());
+            }
+        }
+    }
+
+    private double documentCount() {
+        return running ? writer.getDocStats().numDocs : 0;
+    }
+
+    private static String conversation(long userA, long userB) {
+        return Math.min(userA, userB) + ":" + Math.max(userA, userB);
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
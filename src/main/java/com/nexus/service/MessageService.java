@@ -1,68 +1,230 @@
 package com.nexus.service;
 
-import com.nexus.mapper.MessageMapper;
+import com.nexus.archive.MessageArchive;
 import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.MessageSliceDto;
 import com.nexus.model.entity.Message;
 import com.nexus.model.entity.MessageStatus;
 import com.nexus.model.entity.MessageType;
 import com.nexus.model.entity.User;
 import com.nexus.repository.MessageRepository;
-import com.nexus.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class MessageService {
 
+    private static final int MAX_SLICE_SIZE = 200;
+
     private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
+    private final UserIdentityCache userIdentityCache;
     private final FileStorageService fileStorageService;
-    private final MessageMapper messageMapper = MessageMapper.INSTANCE;
+    private final MessageIdAllocator messageIdAllocator;
+    private final MessageWriteBehindService writeBehindService;
+    private final ConversationSummaryService conversationSummaryService;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
+    private final MessageArchive messageArchive;
+    private final MessageExpiryService messageExpiryService;
 
+    /**
+     * One page of the conversation. Newest-first pages that run past the oldest message still in
+     * the database continue in the archive, and the total includes archived messages.
+     */
     @Transactional(readOnly = true)
     public Page<ChatMessageDto> getMessageHistory(Long senderId, Long recipientId, Pageable pageable) {
-        Page<Message> messages = messageRepository.findConversation(senderId, recipientId, pageable);
-        return messages.map(messageMapper::messageToChatMessageDto);
+        Page<ChatMessageDto> hot = getLiveMessageHistory(senderId, recipientId, pageable);
+        long archived = isNewestFirst(pageable.getSort()) ? messageArchive.count(senderId, recipientId) : 0;
+        if (archived == 0) {
+            return hot;
+        }
+        long total = hot.getTotalElements() + archived;
+        if (hot.getNumberOfElements() == pageable.getPageSize()) {
+            return new PageImpl<>(hot.getContent(), pageable, total);
+        }
+        List<ChatMessageDto> page = new ArrayList<>(hot.getContent());
+        int skip = (int) Math.max(0, pageable.getOffset() - hot.getTotalElements());
+        page.addAll(messageArchive.findNewest(senderId, recipientId, skip, pageable.getPageSize() - page.size()));
+        return new PageImpl<>(page, pageable, total);
+    }
+
+    /**
+     * Keyset history: the page before {@code beforeId} (newest first) or, when {@code afterId} is
+     * given, the page after it (oldest first). Neither means the latest page. No count query is run;
+     * one extra row is read to tell whether there is more. Pages crossing the oldest message still
+     * in the database are completed from the archive.
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceDto getMessageHistorySlice(Long userId, Long peerId, Long beforeId, Long afterId, int size) {
+        if (beforeId != null && afterId != null) {
+            throw new IllegalArgumentException("Only one of before and after can be given");
+        }
+        int limit = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+        List<ChatMessageDto> messages;
+        if (afterId != null) {
+            messages = new ArrayList<>();
+            if (messageArchive.hasAfter(userId, peerId, afterId)) {
+                messages.addAll(messageArchive.findAfter(userId, peerId, afterId, limit + 1));
+            }
+            if (messages.size() <= limit) {
+                long from = messages.isEmpty() ? afterId : messages.getLast().getId();
+                messages.addAll(messageRepository.findConversationAfter(userId, peerId, from, limit + 1 - messages.size()));
+            }
+        } else {
+            RecentMessageCache.RecentMessages recent = beforeId == null ? recentMessageCache.newest(userId, peerId, limit) : null;
+            if (recent != null) {
+                List<ChatMessageDto> page = recent.messages();
+                boolean hasMore = recent.total() > page.size();
+                if (hasMore || messageArchive.count(userId, peerId) == 0) {
+                    return new MessageSliceDto(page, hasMore, hasMore ? page.get(page.size() - 1).getId() : null);
+                }
+                messages = new ArrayList<>(page);
+            } else {
+                messages = new ArrayList<>(messageRepository.findConversationBefore(userId, peerId,
+                        beforeId != null ? beforeId : Long.MAX_VALUE, limit + 1));
+            }
+            if (messages.size() <= limit) {
+                long from = messages.isEmpty() ? (beforeId != null ? beforeId : Long.MAX_VALUE) : messages.getLast().getId();
+                messages.addAll(messageArchive.findBefore(userId, peerId, from, limit + 1 - messages.size()));
+            }
+        }
+
+        boolean hasMore = messages.size() > limit;
+        List<ChatMessageDto> page = hasMore ? messages.subList(0, limit) : messages;
+        Long nextCursor = hasMore ? page.get(page.size() - 1).getId() : null;
+        return new MessageSliceDto(page, hasMore, nextCursor);
+    }
+
+    private Page<ChatMessageDto> getLiveMessageHistory(Long senderId, Long recipientId, Pageable pageable) {
+        if (pageable.getPageNumber() == 0 && isNewestFirst(pageable.getSort())) {
+            RecentMessageCache.RecentMessages recent = recentMessageCache.newest(senderId, recipientId, pageable.getPageSize());
+            if (recent != null) {
+                List<ChatMessageDto> page = new ArrayList<>(recent.messages());
+                if ("timestamp".equals(pageable.getSort().iterator().next().getProperty())) {
+                    page.sort(Comparator.comparing(ChatMessageDto::getTimestamp).reversed());
+                }
+                return new PageImpl<>(page, pageable, recent.total());
+            }
+        }
+        return messageRepository.findConversation(senderId, recipientId, pageable);
     }
 
     @Transactional
     public Message saveMessage(ChatMessageDto chatMessageDto) {
-        User sender = userRepository.findByUsername(chatMessageDto.getSenderUsername())
-                .orElseThrow(() -> new IllegalArgumentException("Sender not found"));
-        User recipient = userRepository.findByUsername(chatMessageDto.getRecipientUsername())
-                .orElseThrow(() -> new IllegalArgumentException("Recipient not found"));
+        User sender = resolveUser(chatMessageDto.getSenderUsername(), "Sender not found");
+        User recipient = resolveUser(chatMessageDto.getRecipientUsername(), "Recipient not found");
 
         Message message = new Message();
         message.setSender(sender);
         message.setRecipient(recipient);
+        message.assignConversationKey();
         message.setContent(chatMessageDto.getContent());
         message.setTimestamp(LocalDateTime.now());
+        message.setUpdatedAt(message.getTimestamp());
         message.setType(chatMessageDto.getType());
         message.setStatus(MessageStatus.SENT);
         message.setDeleted(false);
 
-        return messageRepository.save(message);
+        if (writeBehindService.isEnabled()) {
+            if (message.getType() == null) {
+                throw new IllegalArgumentException("Message type is required");
+            }
+            // The ID is assigned up front so the message can be delivered before its row is inserted.
+            message.setId(messageIdAllocator.nextId());
+            writeBehindService.enqueue(message);
+            return message;
+        }
+        Message saved = messageRepository.save(message);
+        conversationSummaryService.recordMessages(List.of(saved));
+        recentMessageCache.recordSaved(List.of(saved));
+        messageSearchIndex.recordSaved(List.of(saved));
+        messageExpiryService.recordSaved(List.of(saved));
+        return saved;
+    }
+
+    private static boolean isNewestFirst(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        return orders.size() == 1 && orders.get(0).isDescending()
+                && ("timestamp".equals(orders.get(0).getProperty()) || "id".equals(orders.get(0).getProperty()));
+    }
+
+    private User resolveUser(String username, String notFoundMessage) {
+        return resolveIdentity(username, notFoundMessage).reference();
+    }
+
+    private UserIdentityCache.UserIdentity resolveIdentity(String username, String notFoundMessage) {
+        try {
+            return userIdentityCache.get(username);
+        } catch (UsernameNotFoundException e) {
+            throw new IllegalArgumentException(notFoundMessage);
+        }
+    }
+
+    /**
+     * With write-behind, waits until the message with this ID (and every one queued before it) has
+     * its row. Callers updating messages by ID right after delivery call this first, outside any
+     * transaction; without write-behind it returns at once.
+     */
+    public void awaitPersisted(Long messageId) {
+        if (writeBehindService.isEnabled() && messageId != null) {
+            writeBehindService.awaitPersisted(messageId);
+        }
     }
 
     @Transactional
     public void updateStatus(Long messageId, MessageStatus status) {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new IllegalArgumentException("Message not found"));
+        boolean newlyRead = status == MessageStatus.READ && message.getStatus() != MessageStatus.READ && !message.isDeleted();
         message.setStatus(status);
         messageRepository.save(message);
+        recentMessageCache.recordStatus(message.getSender().getId(), message.getRecipient().getId(),
+                dto -> messageId.equals(dto.getId()), EnumSet.allOf(MessageStatus.class), status);
+        if (newlyRead) {
+            conversationSummaryService.recordRead(message.getRecipient(), message.getSender().getId(), 1);
+        }
+    }
+
+    /**
+     * Marks every message the sender sent to the reader up to the watermark as READ in one update.
+     * Returns the number of messages that changed.
+     *
+     * @throws IllegalArgumentException if the sender or the watermark is missing
+     */
+    @Transactional
+    public int markConversationRead(String readerUsername, String senderUsername, Long upToMessageId) {
+        if (senderUsername == null || upToMessageId == null) {
+            throw new IllegalArgumentException("Sender and upToMessageId are required");
+        }
+        UserIdentityCache.UserIdentity reader = resolveIdentity(readerUsername, "Reader not found");
+        Long readerId = reader.id();
+        Long senderId = resolveIdentity(senderUsername, "Sender not found").id();
+        Set<MessageStatus> unread = EnumSet.of(MessageStatus.SENT, MessageStatus.DELIVERED);
+        int updated = messageRepository.advanceStatusUpTo(senderId, readerId, upToMessageId, unread, MessageStatus.READ);
+        conversationSummaryService.recordRead(reader.reference(), senderId, updated);
+        recentMessageCache.recordStatus(readerId, senderId,
+                dto -> senderUsername.equals(dto.getSenderUsername()) && dto.getId() <= upToMessageId,
+                unread, MessageStatus.READ);
+        return updated;
     }
 
     @Transactional(readOnly = true)
@@ -71,19 +233,32 @@ public class MessageService {
                 .orElseThrow(() -> new IllegalArgumentException("Message not found"));
     }
 
+    /**
+     * Deletes one of the current user's messages and returns it as deleted. A message that has
+     * been archived is tombstoned in the archive instead.
+     */
     @Transactional
-    public Message softDeleteMessage(Long messageId) {
+    public ChatMessageDto softDeleteMessage(Long messageId) {
         String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        Message message = messageRepository.findById(messageId).orElse(null);
+        if (message == null) {
+            return deleteArchived(messageId, currentUsername);
+        }
 
         if (!message.getSender().getUsername().equals(currentUsername)) {
             throw new AccessDeniedException("User is not authorized to delete this message");
         }
 
+        boolean wasDeleted = message.isDeleted();
         message.setDeleted(true);
         messageRepository.save(message);
-        return message;
+        if (!wasDeleted) {
+            conversationSummaryService.recordDeleted(message, message.getStatus());
+            recentMessageCache.recordDeleted(message);
+            messageSearchIndex.recordDeleted(message);
+        }
+        return new ChatMessageDto(message.getId(), message.getSender().getUsername(), message.getRecipient().getUsername(),
+                message.getContent(), message.getType(), message.getStatus(), message.getTimestamp(), true);
     }
 
     @Transactional(readOnly = true)
@@ -99,28 +274,58 @@ public class MessageService {
             typesToFetch = Arrays.asList(MessageType.IMAGE, MessageType.FILE);
         }
 
-        List<Message> messages = messageRepository.findAllByTypeIn(typesToFetch);
-        return messages.stream()
-                .map(messageMapper::messageToChatMessageDto)
-                .collect(Collectors.toList());
+        return messageRepository.findMediaByTypeIn(typesToFetch);
     }
 
     @Transactional
     public void hardDeleteMessage(Long messageId) throws IOException {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
-
-        if (message.getType() == MessageType.IMAGE || message.getType() == MessageType.FILE) {
-            String filePath = message.getContent();
-            if (filePath != null && !filePath.isEmpty()) {
-                String filename = filePath.substring(filePath.lastIndexOf("/") + 1);
-                fileStorageService.delete(filename);
-            }
+        Message message = messageRepository.findById(messageId).orElse(null);
+        if (message == null) {
+            ChatMessageDto archived = deleteArchived(messageId, null);
+            deleteMediaFile(archived.getType(), archived.getContent());
+            return;
         }
 
+        deleteMediaFile(message.getType(), message.getContent());
+
+        boolean wasDeleted = message.isDeleted();
         message.setDeleted(true);
         message.setType(MessageType.TEXT);
         message.setContent("[media permanently deleted by admin]");
         messageRepository.save(message);
+        if (!wasDeleted) {
+            conversationSummaryService.recordDeleted(message, message.getStatus());
+            recentMessageCache.recordDeleted(message);
+            messageSearchIndex.recordDeleted(message);
+        }
+    }
+
+    /**
+     * Tombstones an archived message, if {@code requiredSender} (when given) sent it; archived
+     * messages are all read, and neither cached nor searchable.
+     */
+    private ChatMessageDto deleteArchived(Long messageId, String requiredSender) {
+        MessageArchive.ArchivedMessage archived = messageArchive.find(messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        ChatMessageDto message = archived.message();
+        if (requiredSender != null && !message.getSenderUsername().equals(requiredSender)) {
+            throw new AccessDeniedException("User is not authorized to delete this message");
+        }
+        messageArchive.tombstone(archived.lowId(), archived.highId(), List.of(messageId));
+
+        Message deleted = new Message();
+        deleted.setId(messageId);
+        deleted.setSender(resolveUser(message.getSenderUsername(), "Sender not found"));
+        deleted.setRecipient(resolveUser(message.getRecipientUsername(), "Recipient not found"));
+        conversationSummaryService.recordDeleted(deleted, MessageStatus.READ);
+        message.setDeleted(true);
+        return message;
+    }
+
+    private void deleteMediaFile(MessageType type, String filePath) throws IOException {
+        if ((type == MessageType.IMAGE || type == MessageType.FILE) && filePath != null && !filePath.isEmpty()) {
+            String filename = filePath.substring(filePath.lastIndexOf("/") + 1);
+            fileStorageService.delete(filename);
+        }
     }
 }
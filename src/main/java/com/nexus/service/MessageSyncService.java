@@ -0,0 +1,207 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.config.SessionLaneExecutor;
+import com.nexus.config.WebSocketSessionRegistry;
+import com.nexus.mapper.MessageMapper;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.SyncChunkDto;
+import com.nexus.model.entity.Message;
+import com.nexus.repository.MessageRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reconnect delta sync: every message a user sent or received that was created or changed
+ * (status, soft deletion) after a point in time, read in keyset chunks so memory stays bounded
+ * by {@code chunk-size} however long the client was away.
+ * <p>
+ * The cursor handed back is the server time before the first read; the next sync starts
+ * {@code overlap-ms} before it, so rows committed late by a concurrent transaction are not
+ * missed. Clients therefore apply messages idempotently by ID.
+ */
+@Service
+@Slf4j
+public class MessageSyncService {
+
+    private final MessageRepository messageRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final MessageMapper messageMapper;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SessionLaneExecutor sessionLaneExecutor;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int chunkSize;
+    private final long overlapMs;
+
+    public MessageSyncService(MessageRepository messageRepository,
+                              UserIdentityCache userIdentityCache,
+                              MessageMapper messageMapper,
+                              ObjectMapper objectMapper,
+                              EntityManager entityManager,
+                              SimpMessagingTemplate messagingTemplate,
+                              SessionLaneExecutor sessionLaneExecutor,
+                              WebSocketSessionRegistry sessionRegistry,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.sync.chunk-size:500}") int chunkSize,
+                              @Value("${app.sync.overlap-ms:5000}") long overlapMs) {
+        this.messageRepository = messageRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.messageMapper = messageMapper;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.messagingTemplate = messagingTemplate;
+        this.sessionLaneExecutor = sessionLaneExecutor;
+        this.sessionRegistry = sessionRegistry;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.chunkSize = chunkSize;
+        this.overlapMs = overlapMs;
+    }
+
+    /**
+     * Where to read from: the client's cursor if it has one, otherwise the time of the last
+     * message it has, which must be one of its own. Either way moved back by the overlap window.
+     */
+    public LocalDateTime resolveSince(String username, LocalDateTime since, Long lastMessageId) {
+        if (since == null && lastMessageId == null) {
+            throw new IllegalArgumentException("Either since or lastMessageId is required");
+        }
+        if (since == null) {
+            Long userId = userId(username);
+            Message last = messageRepository.findById(lastMessageId)
+                    .filter(message -> message.getSender().getId().equals(userId)
+                            || message.getRecipient().getId().equals(userId))
+                    .orElseThrow(() -> new IllegalArgumentException("Message not found"));
+            since = last.getTimestamp();
+        }
+        return since.minus(overlapMs, ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Feeds the changes chunk by chunk to the consumer, outside any transaction, and returns
+     * the cursor for the next sync.
+     */
+    public LocalDateTime forEachChunk(String username, LocalDateTime since, Consumer<List<ChatMessageDto>> consumer) {
+        LocalDateTime cursor = LocalDateTime.now();
+        Long userId = userId(username);
+        long afterId = 0;
+        while (true) {
+            List<ChatMessageDto> chunk = readChunk(userId, since, afterId);
+            if (chunk.isEmpty()) {
+                return cursor;
+            }
+            consumer.accept(chunk);
+            if (chunk.size() < chunkSize) {
+                return cursor;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Writes {@code {"messages":[...],"cursor":"..."}} to the stream as the chunks are read.
+     */
+    public void writeJson(String username, LocalDateTime since, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("messages");
+            LocalDateTime cursor = forEachChunk(username, since, chunk -> {
+                try {
+                    for (ChatMessageDto message : chunk) {
+                        objectMapper.writeValue(json, message);
+                    }
+                    json.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+            json.writeFieldName("cursor");
+            objectMapper.writeValue(json, cursor);
+            json.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sends the changes to one STOMP session on {@code /user/queue/sync}. Each chunk after the
+     * first is read on the session's outbound lane once the previous one has been written, so a
+     * slow client slows the sync instead of growing its backlog, and no thread waits for it.
+     */
+    public void streamToSession(String username, String sessionId, LocalDateTime since) {
+        SyncStream stream = new SyncStream(username, userId(username), sessionId, since, LocalDateTime.now());
+        sessionLaneExecutor.runAfterQueued(sessionId, () -> continueStream(stream, 0));
+    }
+
+    private record SyncStream(String username, Long userId, String sessionId, LocalDateTime since, LocalDateTime cursor) {
+    }
+
+    private void continueStream(SyncStream stream, long afterId) {
+        if (!sessionRegistry.isOpen(stream.sessionId())) {
+            log.debug("Sync for session {} stopped, the session is closed", stream.sessionId());
+            return;
+        }
+        List<ChatMessageDto> chunk = readChunk(stream.userId(), stream.since(), afterId);
+        if (!chunk.isEmpty()) {
+            sendToSession(stream.username(), stream.sessionId(), new SyncChunkDto(chunk, null, false));
+        }
+        if (chunk.size() < chunkSize) {
+            sendToSession(stream.username(), stream.sessionId(), new SyncChunkDto(List.of(), stream.cursor(), true));
+            return;
+        }
+        long nextAfterId = chunk.get(chunk.size() - 1).getId();
+        sessionLaneExecutor.runAfterQueued(stream.sessionId(), () -> continueStream(stream, nextAfterId));
+    }
+
+    private List<ChatMessageDto> readChunk(Long userId, LocalDateTime since, long afterId) {
+        List<ChatMessageDto> chunk = readOnlyTransaction.execute(status -> {
+            List<ChatMessageDto> dtos = messageRepository
+                    .findChangedSince(userId, since, afterId, PageRequest.of(0, chunkSize))
+                    .stream()
+                    .map(messageMapper::messageToChatMessageDto)
+                    .toList();
+            // The persistence context may be request-scoped (open-in-view); do not let it grow.
+            entityManager.clear();
+            return dtos;
+        });
+        return chunk != null ? chunk : List.of();
+    }
+
+    private void sendToSession(String username, String sessionId, SyncChunkDto chunk) {
+        // A session ID in the headers narrows the user destination to that one session.
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(username, "/queue/sync", chunk, headers.getMessageHeaders());
+    }
+
+    private Long userId(String username) {
+        try {
+            return userIdentityCache.get(username).id();
+        } catch (UsernameNotFoundException e) {
+            throw new IllegalArgumentException("User not found");
+        }
+    }
+}
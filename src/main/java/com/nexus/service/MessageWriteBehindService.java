@@ -0,0 +1,392 @@
+package com.nexus.service;
+
+import com.nexus.model.entity.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for chat messages. Callers get the message back with its final ID
+ * immediately; rows are inserted by a single flusher thread in multi-row batches, one commit per
+ * batch.
+ * <p>
+ * Durability guarantee: a message is durable once the batch containing it commits, which happens
+ * at most {@code flush-interval-ms} after it was queued (plus the insert time) while the database
+ * is reachable. On a crash (process kill, power loss) messages still in the queue are lost, which
+ * is at most {@code queue-capacity} messages. Otherwise an accepted message is only ever dropped
+ * when the database rejects it for good: a row violating a constraint, or a batch failing for a
+ * non-transient reason {@code max-retries} times in a row.
+ * <p>
+ * While the database is unreachable (connection, timeout or other transient failures) the flusher
+ * retries its batch every {@code retry-backoff-ms} for as long as the outage lasts. The queue
+ * fills up meanwhile; once it is full a caller blocks for up to {@code offer-timeout-ms} and then
+ * inserts the message itself, which fails while the database is down, so new messages are
+ * refused rather than accepted and lost. The same fallback turns plain overload into synchronous
+ * writes. On shutdown the queue is drained before the datasource closes; retries stop after
+ * {@code shutdown-timeout-ms}, and whatever is still queued then is lost and logged.
+ * <p>
+ * A message is delivered before its row exists, so anything that updates messages by ID must
+ * call {@link #awaitPersisted(long)} first (outside a transaction).
+ * <p>
+ * IDs come from {@link MessageIdAllocator} blocks held per process, so with several nodes a
+ * later message could get a lower ID than an earlier one from another node. Write-behind
+ * therefore refuses to start unless {@code app.cluster.transport} is {@code none}.
+ */
+@Service
+@Slf4j
+public class MessageWriteBehindService implements SmartLifecycle {
+
+    private static final String INSERT_SQL = "INSERT INTO messages "
+            + "(id, type, sender_id, recipient_id, content, timestamp, status, expires_at, deleted, updated_at, "
+            + "conversation_low_id, conversation_high_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConversationSummaryService conversationSummaryService;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
+    private final MessageExpiryService messageExpiryService;
+    private final boolean enabled;
+    private final BlockingQueue<Message> queue;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMs;
+    private final long retryBackoffMs;
+    private final int maxRetries;
+    private final long awaitTimeoutMs;
+    private final long shutdownTimeoutMs;
+
+    /** IDs queued but not yet committed (or dropped). */
+    private final NavigableSet<Long> unpersisted = new ConcurrentSkipListSet<>();
+    private final Object flushed = new Object();
+
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile long stopDeadline;
+    private Thread flusher;
+
+    public MessageWriteBehindService(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     ConversationSummaryService conversationSummaryService,
+                                     RecentMessageCache recentMessageCache,
+                                     MessageSearchIndex messageSearchIndex,
+                                     MessageExpiryService messageExpiryService,
+                                     @Value("${app.messages.write-behind.enabled:false}") boolean enabled,
+                                     @Value("${app.messages.write-behind.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${app.messages.write-behind.flush-size:200}") int flushSize,
+                                     @Value("${app.messages.write-behind.flush-interval-ms:10}") long flushIntervalMs,
+                                     @Value("${app.messages.write-behind.offer-timeout-ms:250}") long offerTimeoutMs,
+                                     @Value("${app.messages.write-behind.retry-backoff-ms:500}") long retryBackoffMs,
+                                     @Value("${app.messages.write-behind.max-retries:10}") int maxRetries,
+                                     @Value("${app.messages.write-behind.await-timeout-ms:5000}") long awaitTimeoutMs,
+                                     @Value("${app.messages.write-behind.shutdown-timeout-ms:30000}") long shutdownTimeoutMs,
+                                     @Value("${app.cluster.transport:none}") String clusterTransport) {
+        if (enabled && !"none".equalsIgnoreCase(clusterTransport)) {
+            throw new IllegalStateException("app.messages.write-behind.enabled requires app.cluster.transport=none: "
+                    + "per-node ID blocks would break ID order across nodes");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.conversationSummaryService = conversationSummaryService;
+        this.recentMessageCache = recentMessageCache;
+        this.messageSearchIndex = messageSearchIndex;
+        this.messageExpiryService = messageExpiryService;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetries = maxRetries;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a message that already carries its ID. Falls back to a synchronous insert when the
+     * flusher is not running or the queue stays full for longer than the offer timeout.
+     */
+    public void enqueue(Message message) {
+        if (!running) {
+            writeBatch(List.of(message));
+            return;
+        }
+        // Tracked before it is visible to the flusher, which may commit it right away
+        unpersisted.add(message.getId());
+        try {
+            if (queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        callerRuns.incrementAndGet();
+        try {
+            writeBatch(List.of(message));
+        } finally {
+            release(List.of(message));
+        }
+    }
+
+    /**
+     * Blocks until every queued message with an ID up to {@code maxId} has been committed or
+     * dropped, so a following update by ID finds its row. Returns at once when none is queued.
+     * Must not be called inside a transaction: the flusher needs a connection of its own.
+     *
+     * @throws IllegalStateException if they are still queued after {@code await-timeout-ms}
+     */
+    public void awaitPersisted(long maxId) {
+        if (unpersisted.headSet(maxId, true).isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMs);
+        synchronized (flushed) {
+            while (!unpersisted.headSet(maxId, true).isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Message " + unpersisted.first() + " is not persisted yet");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(flushed, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for message " + maxId, e);
+                }
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getPersistedCount() {
+        return persisted.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRuns.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofPlatform()
+                .name("message-write-behind")
+                .daemon(true)
+                .start(this::flushLoop);
+        log.info("Message write-behind enabled (flush size {}, flush interval {} ms, capacity {})",
+                flushSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), queue.remainingCapacity());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        stopDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        running = false;
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!flusher.isAlive() && !queue.isEmpty()) {
+            // Producers that raced with stop() may have queued after the flusher's last poll.
+            List<Message> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            persistOrDrop(rest);
+        }
+        if (flusher.isAlive() || !queue.isEmpty()) {
+            log.error("Message write-behind did not drain within {} ms, {} messages were not persisted",
+                    shutdownTimeoutMs, queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void flushLoop() {
+        List<Message> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            collectBatch(batch);
+            if (!batch.isEmpty()) {
+                persistOrDrop(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<Message> batch) {
+        try {
+            Message first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            // The first message waits at most one flush interval for the batch to fill up.
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (batch.size() < flushSize) {
+                queue.drainTo(batch, flushSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= flushSize || remaining <= 0 || !running) {
+                    return;
+                }
+                Message next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Only stop() ends the flusher, and only once the queue is empty; flush what we have.
+        }
+    }
+
+    private void persistOrDrop(List<Message> batch) {
+        try {
+            flushWithRetry(batch);
+        } catch (RuntimeException e) {
+            dropped.addAndGet(batch.size());
+            log.error("Dropping batch of {} messages (IDs {} to {}) that could not be persisted",
+                    batch.size(), batch.getFirst().getId(), batch.getLast().getId(), e);
+        } finally {
+            release(batch);
+        }
+    }
+
+    /**
+     * Writes the batch. Transient failures are retried until they pass (or the shutdown timeout
+     * has run out), other failures up to {@code max-retries} times before the last one is rethrown.
+     */
+    private void flushWithRetry(List<Message> batch) {
+        int failures = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // One bad row must not hold back the rest of the batch.
+                writeIndividually(batch);
+                return;
+            } catch (DataAccessException | CannotCreateTransactionException e) {
+                boolean retry = isTransient(e)
+                        ? running || System.nanoTime() - stopDeadline < 0
+                        : ++failures <= maxRetries;
+                if (!retry) {
+                    throw e;
+                }
+                log.warn("Failed to persist batch of {} messages, retrying in {} ms (attempt {}): {}",
+                        batch.size(), retryBackoffMs, attempt, e.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMs);
+                } catch (InterruptedException ignored) {
+                    // Keep retrying; the batch is still owned by this thread.
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void writeIndividually(List<Message> batch) {
+        for (Message message : batch) {
+            try {
+                writeBatch(List.of(message));
+            } catch (DataIntegrityViolationException e) {
+                dropped.incrementAndGet();
+                log.error("Dropping message {} that cannot be persisted: {}", message.getId(), e.getMessage());
+            } catch (DataAccessException e) {
+                persistOrDrop(List.of(message));
+            }
+        }
+    }
+
+    private void release(List<Message> batch) {
+        for (Message message : batch) {
+            unpersisted.remove(message.getId());
+        }
+        synchronized (flushed) {
+            flushed.notifyAll();
+        }
+    }
+
+    private void writeBatch(List<Message> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind);
+            conversationSummaryService.recordMessages(batch);
+            recentMessageCache.recordSaved(batch);
+            messageSearchIndex.recordSaved(batch);
+            messageExpiryService.recordSaved(batch);
+        });
+        persisted.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    private void bind(PreparedStatement ps, Message message) throws SQLException {
+        ps.setLong(1, message.getId());
+        ps.setString(2, message.getType().name());
+        ps.setLong(3, message.getSender().getId());
+        ps.setLong(4, message.getRecipient().getId());
+        ps.setString(5, message.getContent());
+        ps.setObject(6, message.getTimestamp());
+        ps.setString(7, message.getStatus().name());
+        if (message.getExpiresAt() != null) {
+            ps.setObject(8, message.getExpiresAt());
+        } else {
+            ps.setNull(8, Types.TIMESTAMP);
+        }
+        ps.setBoolean(9, message.isDeleted());
+        ps.setObject(10, message.getUpdatedAt() != null ? message.getUpdatedAt() : message.getTimestamp());
+        ps.setLong(11, message.getConversationLowId());
+        ps.setLong(12, message.getConversationHighId());
+    }
+}
@@ -0,0 +1,72 @@
+package com.nexus.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * Serializes a payload once and sends the same encoded message to any number of destinations.
+ * {@link SimpMessagingTemplate#convertAndSendToUser} runs the message converter on every call;
+ * here only the headers are rebuilt per destination and the byte[] payload is shared, including
+ * by the broker when it fans out to individual sessions.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboundMessageSender {
+
+    /**
+     * Message header marking frames a slow consumer can lose without harm (typing started).
+     * It survives user destination resolution and broker fan-out but is not a STOMP header.
+     */
+    public static final String DROPPABLE_HEADER = "nexusDroppable";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public Message<?> encode(Object payload) {
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, null);
+        if (message == null) {
+            throw new MessageConversionException("Unable to encode payload of type " + payload.getClass().getName());
+        }
+        return message;
+    }
+
+    public Message<?> encodeDroppable(Object payload) {
+        return MessageBuilder.fromMessage(encode(payload)).setHeader(DROPPABLE_HEADER, Boolean.TRUE).build();
+    }
+
+    public void send(String destination, Object payload) {
+        messagingTemplate.send(destination, encode(payload));
+    }
+
+    public void sendDroppable(String destination, Object payload) {
+        messagingTemplate.send(destination, encodeDroppable(payload));
+    }
+
+    public void sendDroppableToUser(String username, String destination, Object payload) {
+        sendToUser(username, destination, encodeDroppable(payload));
+    }
+
+    public void sendToUser(String username, String destination, Message<?> encoded) {
+        messagingTemplate.send(userDestination(username, destination), encoded);
+    }
+
+    public void sendToUsers(Collection<String> usernames, String destination, Object payload) {
+        Message<?> encoded = encode(payload);
+        for (String username : usernames) {
+            sendToUser(username, destination, encoded);
+        }
+    }
+
+    // Same resolution as SimpMessagingTemplate#convertAndSendToUser
+    private String userDestination(String username, String destination) {
+        String user = StringUtils.replace(username, "/", "%2F");
+        String path = destination.startsWith("/") ? destination : "/" + destination;
+        return messagingTemplate.getUserDestinationPrefix() + user + path;
+    }
+}
@@ -0,0 +1,245 @@
+package com.nexus.service;
+
+import com.nexus.cluster.ClusterRouter;
+import com.nexus.model.dto.PresenceDiffDto;
+import com.nexus.repository.ConversationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends presence only to the users who care about it: a watcher is interested in its
+ * {@code max-contacts} most recent conversation peers, loaded when its first session opens, and in
+ * anyone it asks for through {@code /app/presence.watch} (at most {@code max-watched} in all).
+ * Interest is dropped when the watcher's last session closes.
+ * <p>
+ * Changes from the {@link PresenceRegistry} are collected and flushed every
+ * {@code flush-interval-ms} as one {@link PresenceDiffDto} per watcher on /user/queue/presence.
+ * A user who goes offline is announced only after staying offline for {@code offline-grace-ms},
+ * and a change that is undone before it is flushed is never sent, so reconnecting clients do not
+ * flap. A user counts as online with a session on any node: changes on other nodes arrive from the
+ * {@link ClusterRouter} as {@link ClusterRouter.RemotePresenceChange}s. Watchers are the users
+ * connected to this node; every node serves its own.
+ */
+@Service
+@Slf4j
+public class PresenceFanoutService {
+
+    private static final String DESTINATION = "/queue/presence";
+
+    private final PresenceRegistry presenceRegistry;
+    private final ClusterRouter clusterRouter;
+    private final ConversationRepository conversationRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final OutboundMessageSender outboundMessageSender;
+    private final int maxContacts;
+    private final int maxWatched;
+    private final long offlineGraceNanos;
+
+    /** Subject to the watchers interested in it, and the reverse. */
+    private final Map<String, Set<String>> watchersBySubject = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> subjectsByWatcher = new ConcurrentHashMap<>();
+    /** Users whose presence changed since they were last announced, with the time of the latest change. */
+    private final Map<String, Long> changed = new ConcurrentHashMap<>();
+    /** Watchers whose contacts still have to be loaded. */
+    private final Set<String> joining = ConcurrentHashMap.newKeySet();
+    /** Users last announced as online; everyone else was last announced offline, or never. */
+    private final Set<String> announcedOnline = ConcurrentHashMap.newKeySet();
+
+    private final Counter diffsSent;
+
+    public PresenceFanoutService(PresenceRegistry presenceRegistry,
+                                 ClusterRouter clusterRouter,
+                                 ConversationRepository conversationRepository,
+                                 UserIdentityCache userIdentityCache,
+                                 OutboundMessageSender outboundMessageSender,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.presence.max-contacts:500}") int maxContacts,
+                                 @Value("${app.presence.max-watched:2000}") int maxWatched,
+                                 @Value("${app.presence.offline-grace-ms:5000}") long offlineGraceMs) {
+        this.presenceRegistry = presenceRegistry;
+        this.clusterRouter = clusterRouter;
+        this.conversationRepository = conversationRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.outboundMessageSender = outboundMessageSender;
+        this.maxContacts = maxContacts;
+        this.maxWatched = maxWatched;
+        this.offlineGraceNanos = TimeUnit.MILLISECONDS.toNanos(offlineGraceMs);
+
+        this.diffsSent = meterRegistry.counter("presence.diffs");
+        Gauge.builder("presence.watchers", subjectsByWatcher, Map::size)
+                .description("Users receiving presence diffs from this node")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void handlePresenceChange(PresenceRegistry.PresenceChange change) {
+        String username = change.username();
+        log.info("User {}: {}", change.online() ? "connected" : "disconnected", username);
+        changed.put(username, System.nanoTime());
+        if (change.online()) {
+            joining.add(username);
+        } else {
+            joining.remove(username);
+            removeWatcher(username);
+        }
+    }
+
+    @EventListener
+    public void handleRemotePresenceChange(ClusterRouter.RemotePresenceChange change) {
+        // Flushed like a local change; whether the user is online is decided then
+        changed.put(change.username(), System.nanoTime());
+    }
+
+    /**
+     * Adds explicit interest in these users and returns the current presence of those now watched;
+     * names beyond {@code max-watched} are left out.
+     */
+    public PresenceDiffDto watch(String watcher, Collection<String> usernames) {
+        PresenceDiffDto current = new PresenceDiffDto();
+        if (usernames == null || usernames.isEmpty()) {
+            return current;
+        }
+        addInterest(watcher, usernames);
+        Set<String> watched = subjectsByWatcher.getOrDefault(watcher, Set.of());
+        usernames.stream().distinct().filter(watched::contains).forEach(username ->
+                (isOnline(username) ? current.getOnline() : current.getOffline()).add(username));
+        return current;
+    }
+
+    public void unwatch(String watcher, Collection<String> usernames) {
+        if (usernames == null) {
+            return;
+        }
+        subjectsByWatcher.computeIfPresent(watcher, (key, subjects) -> {
+            subjects.removeAll(usernames);
+            return subjects;
+        });
+        usernames.forEach(subject -> removeFromSubject(subject, watcher));
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms:1000}")
+    public void flush() {
+        Map<String, PresenceDiffDto> diffs = new HashMap<>();
+        for (Iterator<String> it = joining.iterator(); it.hasNext(); ) {
+            String watcher = it.next();
+            it.remove();
+            join(watcher, diffs);
+        }
+
+        long now = System.nanoTime();
+        changed.forEach((subject, changedAt) -> {
+            boolean online = isOnline(subject);
+            if (!online && now - changedAt < offlineGraceNanos) {
+                return; // may reconnect; decide on a later flush
+            }
+            if (!changed.remove(subject, changedAt)) {
+                return; // changed again meanwhile; picked up next time
+            }
+            boolean announce = online ? announcedOnline.add(subject) : announcedOnline.remove(subject);
+            Set<String> watchers = watchersBySubject.get(subject);
+            if (!announce || watchers == null) {
+                return;
+            }
+            for (String watcher : watchers) {
+                PresenceDiffDto diff = diffs.computeIfAbsent(watcher, key -> new PresenceDiffDto());
+                List<String> target = online ? diff.getOnline() : diff.getOffline();
+                // A watcher that just joined may already have it from its contacts
+                if (!target.contains(subject)) {
+                    target.add(subject);
+                }
+            }
+        });
+
+        diffs.forEach((watcher, diff) -> {
+            if (!diff.getOnline().isEmpty() || !diff.getOffline().isEmpty()) {
+                outboundMessageSender.sendToUser(watcher, DESTINATION, outboundMessageSender.encode(diff));
+                diffsSent.increment();
+            }
+        });
+    }
+
+    int watcherCount(String subject) {
+        Set<String> watchers = watchersBySubject.get(subject);
+        return watchers != null ? watchers.size() : 0;
+    }
+
+    private void join(String watcher, Map<String, PresenceDiffDto> diffs) {
+        List<String> contacts;
+        try {
+            Long userId = userIdentityCache.get(watcher).id();
+            contacts = conversationRepository.findPeerUsernames(userId, PageRequest.of(0, maxContacts));
+        } catch (RuntimeException e) {
+            log.warn("Could not load contacts of {} for presence: {}", watcher, e.getMessage());
+            return;
+        }
+        // The client read its contacts' presence over REST before this; catch up on what it missed.
+        for (String subject : addInterest(watcher, contacts)) {
+            if (isOnline(subject)) {
+                diffs.computeIfAbsent(watcher, key -> new PresenceDiffDto()).getOnline().add(subject);
+            }
+        }
+    }
+
+    private boolean isOnline(String username) {
+        return presenceRegistry.isOnline(username) || clusterRouter.hasRemoteSessions(username);
+    }
+
+    private List<String> addInterest(String watcher, Collection<String> subjects) {
+        List<String> added = new ArrayList<>();
+        subjectsByWatcher.compute(watcher, (key, current) -> {
+            Set<String> target = current != null ? current : ConcurrentHashMap.newKeySet();
+            for (String subject : subjects) {
+                if (target.size() >= maxWatched) {
+                    break;
+                }
+                if (!subject.equals(watcher) && target.add(subject)) {
+                    added.add(subject);
+                }
+            }
+            return target;
+        });
+        for (String subject : added) {
+            watchersBySubject.compute(subject, (key, current) -> {
+                Set<String> target = current != null ? current : ConcurrentHashMap.newKeySet();
+                target.add(watcher);
+                return target;
+            });
+        }
+        // The last session may have closed while this ran
+        if (!presenceRegistry.isOnline(watcher)) {
+            removeWatcher(watcher);
+        }
+        return added;
+    }
+
+    private void removeWatcher(String watcher) {
+        Set<String> subjects = subjectsByWatcher.remove(watcher);
+        if (subjects != null) {
+            subjects.forEach(subject -> removeFromSubject(subject, watcher));
+        }
+    }
+
+    private void removeFromSubject(String subject, String watcher) {
+        watchersBySubject.computeIfPresent(subject, (key, watchers) -> {
+            watchers.remove(watcher);
+            return watchers.isEmpty() ? null : watchers;
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package com.nexus.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Users with at least one WebSocket session on this node. Sessions are counted per user, so
+ * closing one of several tabs leaves the user online; a {@link PresenceChange} is published only
+ * when a user's first session opens or last one closes. Duplicate connect or disconnect events
+ * for the same session are ignored.
+ */
+@Component
+public class PresenceRegistry {
+
+    /**
+     * Published after a user goes from no sessions to one ({@code online}) or back. Sequence
+     * numbers increase with every change, so listeners can discard one that arrives after a later one.
+     */
+    public record PresenceChange(String username, boolean online, long sequence) {
+    }
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    /** Orders the published changes; assigned while the user's entry is being updated. */
+    private final AtomicLong changeSequence = new AtomicLong();
+
+    public PresenceRegistry(ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.eventPublisher = eventPublisher;
+        Gauge.builder("presence.online.users", sessionsByUser, Map::size)
+                .description("Users with at least one WebSocket session on this node")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user != null && sessionId != null) {
+            sessionOpened(user.getName(), sessionId);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            sessionClosed(user.getName(), event.getSessionId());
+        }
+    }
+
+    public boolean isOnline(String username) {
+        return sessionsByUser.containsKey(username);
+    }
+
+    public int sessionCount(String username) {
+        Set<String> sessions = sessionsByUser.get(username);
+        return sessions != null ? sessions.size() : 0;
+    }
+
+    void sessionOpened(String username, String sessionId) {
+        long[] changed = new long[1];
+        sessionsByUser.compute(username, (key, sessions) -> {
+            Set<String> target = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+            if (target.add(sessionId) && target.size() == 1) {
+                changed[0] = changeSequence.incrementAndGet();
+            }
+            return target;
+        });
+        if (changed[0] != 0) {
+            eventPublisher.publishEvent(new PresenceChange(username, true, changed[0]));
+        }
+    }
+
+    void sessionClosed(String username, String sessionId) {
+        long[] changed = new long[1];
+        sessionsByUser.computeIfPresent(username, (key, sessions) -> {
+            if (sessions.remove(sessionId) && sessions.isEmpty()) {
+                changed[0] = changeSequence.incrementAndGet();
+                return null;
+            }
+            return sessions;
+        });
+        if (changed[0] != 0) {
+            eventPublisher.publishEvent(new PresenceChange(username, false, changed[0]));
+        }
+    }
+}
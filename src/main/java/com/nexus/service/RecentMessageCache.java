@@ -0,0 +1,283 @@
+package com.nexus.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nexus.mapper.MessageMapper;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The most recent messages of recently read conversations, so the first history page of an active
+ * conversation is served without touching the database.
+ * <p>
+ * A conversation is loaded (its newest {@code messages-per-conversation} messages and its live
+ * message count) the first time its history is read; from then on saves, status changes and
+ * deletions are applied to it once their transaction has committed. Loads and updates of the same
+ * conversation are serialized by the cache, so an update is either seen by the load or applied
+ * after it. Conversations are evicted by total estimated size, least recently used first.
+ * <p>
+ * Each node only sees its own writes, so the cache turns itself off when a cluster transport is
+ * configured.
+ */
+@Component
+@Slf4j
+public class RecentMessageCache {
+
+    private final MessageRepository messageRepository;
+    private final MessageMapper messageMapper = MessageMapper.INSTANCE;
+    private final boolean enabled;
+    private final int capacity;
+    private final Cache<ConversationKey, ConversationBuffer> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public RecentMessageCache(MessageRepository messageRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.messages.recent-cache.enabled:true}") boolean enabled,
+                              @Value("${app.messages.recent-cache.messages-per-conversation:50}") int capacity,
+                              @Value("${app.messages.recent-cache.maximum-bytes:67108864}") long maximumBytes,
+                              @Value("${app.cluster.transport:none}") String clusterTransport) {
+        this.messageRepository = messageRepository;
+        this.enabled = enabled && "none".equalsIgnoreCase(clusterTransport);
+        if (enabled && !this.enabled) {
+            log.info("Recent message cache disabled: other nodes' writes would not reach it (app.cluster.transport={})",
+                    clusterTransport);
+        }
+        this.capacity = capacity;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((ConversationKey key, ConversationBuffer buffer) -> buffer.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "recentMessages");
+        this.hits = meterRegistry.counter("message.history.recent", "result", "hit");
+        this.misses = meterRegistry.counter("message.history.recent", "result", "miss");
+        Gauge.builder("message.history.recent.bytes", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Estimated size of the cached recent messages")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The newest {@code count} live messages of the conversation by ID, newest first, and its live
+     * message count; null when the cache cannot answer (disabled, or too many of the cached
+     * messages were deleted), in which case the caller reads the database.
+     */
+    public RecentMessages newest(Long userA, Long userB, int count) {
+        if (!enabled || count > capacity) {
+            return null;
+        }
+        ConversationKey key = ConversationKey.of(userA, userB);
+        ConversationBuffer buffer = cache.getIfPresent(key);
+        if (buffer != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            buffer = cache.get(key, this::load);
+        }
+        RecentMessages recent = buffer.newest(count, messageMapper::copy);
+        if (recent == null) {
+            // Deletions left fewer cached messages than asked for; start over from the database.
+            cache.invalidate(key);
+        }
+        return recent;
+    }
+
+    public void recordSaved(Collection<Message> messages) {
+        if (!enabled) {
+            return;
+        }
+        List<ChatMessageDto> dtos = new ArrayList<>(messages.size());
+        messages.forEach(message -> dtos.add(messageMapper.messageToChatMessageDto(message)));
+        TransactionCallbacks.afterCommit(() -> {
+            int i = 0;
+            for (Message message : messages) {
+                ChatMessageDto dto = dtos.get(i++);
+                update(ConversationKey.of(message.getSender().getId(), message.getRecipient().getId()),
+                        buffer -> buffer.add(dto));
+            }
+        });
+    }
+
+    public void recordDeleted(Message message) {
+        if (!enabled) {
+            return;
+        }
+        Long messageId = message.getId();
+        ConversationKey key = ConversationKey.of(message.getSender().getId(), message.getRecipient().getId());
+        TransactionCallbacks.afterCommit(() -> update(key, buffer -> buffer.remove(messageId)));
+    }
+
+    /**
+     * Status change of the given messages, or of every message matching {@code filter}, applied to
+     * cached messages that are currently in one of {@code fromStatuses}.
+     */
+    public void recordStatus(Long userA, Long userB, Predicate<ChatMessageDto> filter,
+                             Set<MessageStatus> fromStatuses, MessageStatus status) {
+        if (!enabled) {
+            return;
+        }
+        ConversationKey key = ConversationKey.of(userA, userB);
+        TransactionCallbacks.afterCommit(() -> update(key, buffer -> buffer.forEach(dto -> {
+            if (filter.test(dto) && fromStatuses.contains(dto.getStatus())) {
+                dto.setStatus(status);
+            }
+        })));
+    }
+
+    /**
+     * Drops everything once the current transaction commits, for bulk changes (such as expiry)
+     * that cannot be applied message by message.
+     */
+    public void invalidateAll() {
+        TransactionCallbacks.afterCommit(cache::invalidateAll);
+    }
+
+    private void update(ConversationKey key, Consumer<ConversationBuffer> change) {
+        // compute (rather than mutating in place) waits for a concurrent load and re-weighs the entry
+        cache.asMap().computeIfPresent(key, (k, buffer) -> {
+            change.accept(buffer);
+            return buffer;
+        });
+    }
+
+    private ConversationBuffer load(ConversationKey key) {
+        long live = messageRepository.countConversationByKey(key.lowId(), key.highId());
+        ConversationBuffer buffer = new ConversationBuffer(capacity);
+        List<ChatMessageDto> newest = messageRepository.findConversationBefore(key.lowId(), key.highId(), Long.MAX_VALUE, capacity);
+        for (int i = newest.size() - 1; i >= 0; i--) {
+            buffer.add(newest.get(i));
+        }
+        buffer.total = Math.max(live, buffer.size);
+        return buffer;
+    }
+
+    public record RecentMessages(List<ChatMessageDto> messages, long total) {
+    }
+
+    private record ConversationKey(Long lowId, Long highId) {
+        static ConversationKey of(Long userA, Long userB) {
+            return new ConversationKey(Math.min(userA, userB), Math.max(userA, userB));
+        }
+    }
+
+    /**
+     * Ring buffer of the newest live messages of one conversation in ID order, plus the number of
+     * live messages in the whole conversation. Guarded by its own monitor.
+     */
+    private static final class ConversationBuffer {
+
+        private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+        private final ChatMessageDto[] slots;
+        private int start;
+        private int size;
+        private long total;
+        private int weight;
+
+        ConversationBuffer(int capacity) {
+            this.slots = new ChatMessageDto[capacity];
+        }
+
+        synchronized int weight() {
+            return ENTRY_OVERHEAD_BYTES + weight;
+        }
+
+        synchronized void add(ChatMessageDto dto) {
+            int position = size;
+            while (position > 0 && get(position - 1).getId() >= dto.getId()) {
+                if (get(position - 1).getId().equals(dto.getId())) {
+                    return;
+                }
+                position--;
+            }
+            total++;
+            if (size == slots.length) {
+                if (position == 0) {
+                    return; // older than everything kept
+                }
+                weight -= estimate(get(0));
+                start = (start + 1) % slots.length;
+                size--;
+                position--;
+            }
+            for (int i = size; i > position; i--) {
+                set(i, get(i - 1));
+            }
+            set(position, dto);
+            size++;
+            weight += estimate(dto);
+        }
+
+        synchronized void remove(Long messageId) {
+            total = Math.max(0, total - 1);
+            for (int i = 0; i < size; i++) {
+                if (get(i).getId().equals(messageId)) {
+                    weight -= estimate(get(i));
+                    for (int j = i; j < size - 1; j++) {
+                        set(j, get(j + 1));
+                    }
+                    set(size - 1, null);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        synchronized void forEach(Consumer<ChatMessageDto> action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(get(i));
+            }
+        }
+
+        synchronized RecentMessages newest(int count, UnaryOperator<ChatMessageDto> copy) {
+            if (size < count && size < total) {
+                return null;
+            }
+            List<ChatMessageDto> newest = new ArrayList<>(Math.min(count, size));
+            for (int i = size - 1; i >= 0 && newest.size() < count; i--) {
+                newest.add(copy.apply(get(i)));
+            }
+            return new RecentMessages(newest, total);
+        }
+
+        private ChatMessageDto get(int index) {
+            return slots[(start + index) % slots.length];
+        }
+
+        private void set(int index, ChatMessageDto dto) {
+            slots[(start + index) % slots.length] = dto;
+        }
+
+        private static int estimate(ChatMessageDto dto) {
+            return ENTRY_OVERHEAD_BYTES
+                    + 2 * (length(dto.getContent()) + length(dto.getSenderUsername()) + length(dto.getRecipientUsername()));
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+}
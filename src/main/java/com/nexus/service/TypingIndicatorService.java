@@ -0,0 +1,136 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.TypingStatusDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces typing indicators per (sender, recipient) pair. Only started/stopped transitions are
+ * forwarded, no more often than {@code min-interval-ms}; a transition that arrives inside the
+ * interval is delivered by the sweeper once it elapses, so the recipient always converges on the
+ * latest state. A sender that goes quiet for {@code stop-timeout-ms} is reported as stopped.
+ */
+@Service
+public class TypingIndicatorService {
+
+    private final OutboundMessageSender outboundMessageSender;
+    private final long minIntervalNanos;
+    private final long stopTimeoutNanos;
+    private final Map<TypingKey, TypingState> states = new ConcurrentHashMap<>();
+
+    private final Counter forwarded;
+    private final Counter suppressed;
+    private final Counter timedOut;
+
+    public TypingIndicatorService(OutboundMessageSender outboundMessageSender,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.typing.min-interval-ms:300}") long minIntervalMs,
+                                  @Value("${app.typing.stop-timeout-ms:6000}") long stopTimeoutMs) {
+        this.outboundMessageSender = outboundMessageSender;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+        this.stopTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(stopTimeoutMs);
+        this.forwarded = meterRegistry.counter("typing.frames", "outcome", "forwarded");
+        this.suppressed = meterRegistry.counter("typing.frames", "outcome", "suppressed");
+        this.timedOut = meterRegistry.counter("typing.timeouts");
+        meterRegistry.gaugeMapSize("typing.active.pairs", List.of(), states);
+    }
+
+    /**
+     * Records a typing frame from {@code senderUsername}, the authenticated sender; the
+     * {@code fromUsername} in the payload is ignored.
+     */
+    public void onTypingEvent(String senderUsername, TypingStatusDto typingStatus) {
+        if (typingStatus.getToUsername() == null || typingStatus.getToUsername().equals(senderUsername)) {
+            return;
+        }
+        TypingKey key = new TypingKey(senderUsername, typingStatus.getToUsername());
+        boolean typing = typingStatus.isTyping();
+        long now = System.nanoTime();
+        boolean[] report = {false};
+
+        states.compute(key, (k, current) -> {
+            TypingState state = current != null
+                    ? current.seen(typing, now)
+                    : new TypingState(typing, false, now, now - minIntervalNanos);
+            if (state.isDue(now, minIntervalNanos)) {
+                report[0] = true;
+                return state.reported(now);
+            }
+            return state;
+        });
+
+        if (report[0]) {
+            send(key, typing);
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.typing.sweep-interval-ms:250}")
+    public void sweep() {
+        long now = System.nanoTime();
+        List<TypingStatusDto> pending = new ArrayList<>();
+
+        for (TypingKey key : states.keySet()) {
+            states.computeIfPresent(key, (k, state) -> {
+                boolean idle = now - state.lastSeenNanos() >= stopTimeoutNanos;
+                if (state.typing() && idle) {
+                    timedOut.increment();
+                    state = state.seen(false, state.lastSeenNanos());
+                }
+                if (state.isDue(now, minIntervalNanos)) {
+                    pending.add(new TypingStatusDto(k.from(), k.to(), state.typing()));
+                    return state.reported(now);
+                }
+                // Quiet, stopped pairs carry no information worth keeping.
+                return !state.typing() && !state.reportedTyping() && idle ? null : state;
+            });
+        }
+
+        for (TypingStatusDto status : pending) {
+            send(new TypingKey(status.getFromUsername(), status.getToUsername()), status.isTyping());
+        }
+    }
+
+    private void send(TypingKey key, boolean typing) {
+        forwarded.increment();
+        TypingStatusDto status = new TypingStatusDto(key.from(), key.to(), typing);
+        if (typing) {
+            outboundMessageSender.sendDroppableToUser(key.to(), "/queue/status", status);
+        } else {
+            // Never dropped: a lost stop would leave the recipient showing "typing"
+            outboundMessageSender.sendToUser(key.to(), "/queue/status", outboundMessageSender.encode(status));
+        }
+    }
+
+    private record TypingKey(String from, String to) {
+    }
+
+    /**
+     * {@code typing} is what the sender last told us, {@code reportedTyping} is what the recipient
+     * was last told.
+     */
+    private record TypingState(boolean typing, boolean reportedTyping, long lastSeenNanos, long lastReportNanos) {
+
+        TypingState seen(boolean nowTyping, long now) {
+            return new TypingState(nowTyping, reportedTyping, now, lastReportNanos);
+        }
+
+        TypingState reported(long now) {
+            return new TypingState(typing, typing, lastSeenNanos, now);
+        }
+
+        boolean isDue(long now, long minIntervalNanos) {
+            return typing != reportedTyping && now - lastReportNanos >= minIntervalNanos;
+        }
+    }
+}
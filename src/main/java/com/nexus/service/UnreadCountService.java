@@ -0,0 +1,86 @@
+package com.nexus.service;
+
+import com.nexus.model.dto.UnreadCountDto;
+import com.nexus.model.dto.UnreadCountsDto;
+import com.nexus.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unread counts per conversation, read from the conversations summary, and their push on
+ * {@code /user/queue/unread}. Changes only mark the user; once per {@code push-interval-ms} every
+ * marked user gets one frame with all of their current counts, so a burst of messages (or a
+ * read of a whole conversation) results in a single update.
+ */
+@Service
+@Slf4j
+public class UnreadCountService {
+
+    private final ConversationRepository conversationRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    public UnreadCountService(ConversationRepository conversationRepository,
+                              UserIdentityCache userIdentityCache,
+                              SimpMessagingTemplate messagingTemplate) {
+        this.conversationRepository = conversationRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public UnreadCountsDto getUnreadCounts(Long userId) {
+        return toDto(conversationRepository.findUnread(List.of(userId)).stream()
+                .map(row -> new UnreadCountDto(row.getPeerId(), row.getPeerUsername(), row.getUnreadCount()))
+                .toList());
+    }
+
+    /**
+     * The user's unread counts changed in the current transaction; they are pushed after it commits.
+     */
+    public void markChanged(String username) {
+        TransactionCallbacks.afterCommit(() -> changed.add(username));
+    }
+
+    @Scheduled(fixedDelayString = "${app.unread.push-interval-ms:250}")
+    public void flush() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<Long, String> usernames = new HashMap<>();
+        for (String username : changed) {
+            changed.remove(username);
+            try {
+                usernames.put(userIdentityCache.get(username).id(), username);
+            } catch (UsernameNotFoundException e) {
+                log.debug("Not pushing unread counts to unknown user {}", username);
+            }
+        }
+        if (usernames.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<UnreadCountDto>> counts = new HashMap<>();
+        usernames.keySet().forEach(userId -> counts.put(userId, new ArrayList<>()));
+        conversationRepository.findUnread(usernames.keySet()).forEach(row -> counts.get(row.getUserId())
+                .add(new UnreadCountDto(row.getPeerId(), row.getPeerUsername(), row.getUnreadCount())));
+
+        counts.forEach((userId, conversations) ->
+                messagingTemplate.convertAndSendToUser(usernames.get(userId), "/queue/unread", toDto(conversations)));
+    }
+
+    private static UnreadCountsDto toDto(List<UnreadCountDto> conversations) {
+        return new UnreadCountsDto(conversations, conversations.stream().mapToInt(UnreadCountDto::getUnreadCount).sum());
+    }
+}
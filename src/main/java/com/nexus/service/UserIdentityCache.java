@@ -0,0 +1,90 @@
+package com.nexus.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nexus.model.entity.Role;
+import com.nexus.model.entity.User;
+import com.nexus.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded username -> identity cache for the message and authentication hot paths.
+ * The cached {@link User} is a detached reference holding only the ID, username and roles; it is
+ * good enough as a security principal and as the target of a {@code @ManyToOne} on insert, but it
+ * carries no password and must never be saved. Entries are evicted by {@link UserIdentityCacheInvalidator}
+ * when a user or role changes, and expire after a while to pick up changes made outside JPA.
+ * Hits, misses and evictions are published as the {@code cache.*} meters tagged {@code cache=userIdentity}.
+ */
+@Component
+public class UserIdentityCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, UserIdentity> cache;
+
+    public UserIdentityCache(UserRepository userRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.users.identity-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${app.users.identity-cache.expire-after-write-ms:600000}") long expireAfterWriteMs) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userIdentity");
+    }
+
+    public UserIdentity get(String username) {
+        UserIdentity identity = cache.get(username, this::load);
+        if (identity == null) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        return identity;
+    }
+
+    /**
+     * Returns a detached user reference suitable for associations and as a principal.
+     */
+    public User getReference(String username) {
+        return get(username).reference();
+    }
+
+    public User loadUserByUsername(String username) {
+        return getReference(username);
+    }
+
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    private UserIdentity load(String username) {
+        return userRepository.findByUsername(username)
+                .map(UserIdentityCache::snapshot)
+                .orElse(null);
+    }
+
+    private static UserIdentity snapshot(User user) {
+        Set<Role> roles = Set.copyOf(user.getRoles());
+        User reference = new User();
+        reference.setId(user.getId());
+        reference.setUsername(user.getUsername());
+        reference.setRoles(roles);
+        Set<String> roleNames = roles.stream().map(Role::getName).collect(Collectors.toUnmodifiableSet());
+        return new UserIdentity(user.getId(), user.getUsername(), roleNames, reference);
+    }
+
+    public record UserIdentity(Long id, String username, Set<String> roles, User reference) {
+    }
+}
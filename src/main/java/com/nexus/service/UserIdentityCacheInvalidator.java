@@ -0,0 +1,32 @@
+package com.nexus.service;
+
+import com.nexus.model.entity.Role;
+import com.nexus.model.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * JPA listener on {@link User} and {@link Role} that keeps {@link UserIdentityCache} consistent.
+ * Hibernate creates it through Spring, so the cache is injected lazily to avoid a cycle with the
+ * entity manager factory.
+ */
+public class UserIdentityCacheInvalidator {
+
+    private final UserIdentityCache userIdentityCache;
+
+    public UserIdentityCacheInvalidator(@Lazy UserIdentityCache userIdentityCache) {
+        this.userIdentityCache = userIdentityCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (entity instanceof User user) {
+            userIdentityCache.evict(user.getUsername());
+        } else if (entity instanceof Role) {
+            // Roles are shared by many users, so drop everything rather than track membership.
+            userIdentityCache.evictAll();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.nexus.service;
+
+import com.nexus.cluster.ClusterRouter;
+import com.nexus.model.dto.UserSearchDto;
+import com.nexus.model.dto.UserSearchPageDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Case-insensitive username search held in memory: a sorted map for prefix matches and a
+ * trigram index for matches anywhere in the name (queries of three characters or more).
+ * Results are ranked prefix matches first, users online on any node first within each, then by
+ * name, and paged with an opaque cursor. A user whose presence changes between two pages can move
+ * to the other side of the cursor.
+ * <p>
+ * Loaded at startup; users registered on this node are added right away, and those registered
+ * elsewhere are picked up every {@code refresh-interval-ms}. Users are never renamed or deleted,
+ * so the index only grows. The built-in sysadmin account is not indexed.
+ */
+@Component
+@Slf4j
+public class UserSearchIndex implements SmartLifecycle {
+
+    private static final String HIDDEN_USERNAME = "sysadmin";
+    private static final int GRAM = 3;
+    // IDs are assigned before commit, so a lower one can become visible after a higher one
+    private static final long CATCH_UP_OVERLAP = 1000;
+    private static final String USERS_SQL = "SELECT id, username FROM users WHERE id > ? ORDER BY id";
+
+    private record Entry(long id, String username, String lower) {
+    }
+
+    private record Hit(int tier, Entry entry) {
+    }
+
+    private static final Comparator<Hit> RANK = Comparator.comparingInt(Hit::tier)
+            .thenComparing(hit -> hit.entry().lower())
+            .thenComparing(hit -> hit.entry().username());
+
+    /**
+     * Append-only list of entry slots. Readers take {@code size} first; the array they read
+     * afterwards holds at least that many slots.
+     */
+    private static final class Postings {
+        private volatile int[] slots = new int[4];
+        private volatile int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size] = slot;
+            size = size + 1;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PresenceRegistry presenceRegistry;
+    private final ClusterRouter clusterRouter;
+    private final Timer searchTime;
+
+    /** Keyed by lower-case name, then the name itself, so case variants stay distinct. */
+    private final NavigableMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+    private volatile Entry[] entries = new Entry[1024];
+    private volatile int entryCount;
+    private volatile long maxIndexedId;
+    private volatile boolean running;
+
+    public UserSearchIndex(JdbcTemplate jdbcTemplate, PresenceRegistry presenceRegistry, ClusterRouter clusterRouter,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.presenceRegistry = presenceRegistry;
+        this.clusterRouter = clusterRouter;
+        this.searchTime = meterRegistry.timer("user.search");
+        Gauge.builder("user.search.indexed", this, index -> index.entryCount)
+                .description("Usernames in the in-memory search index")
+                .register(meterRegistry);
+    }
+
+    public synchronized void add(long id, String username) {
+        if (HIDDEN_USERNAME.equalsIgnoreCase(username)) {
+            return;
+        }
+        String lower = username.toLowerCase(Locale.ROOT);
+        Entry entry = new Entry(id, username, lower);
+        if (byName.putIfAbsent(key(lower, username), entry) != null) {
+            return;
+        }
+        int slot = entryCount;
+        if (slot == entries.length) {
+            entries = Arrays.copyOf(entries, slot * 2);
+        }
+        entries[slot] = entry;
+        entryCount = slot + 1;
+        for (String gram : grams(lower)) {
+            postings.computeIfAbsent(gram, key -> new Postings()).add(slot);
+        }
+        if (id > maxIndexedId) {
+            maxIndexedId = id;
+        }
+    }
+
+    /**
+     * Up to {@code limit} users whose name contains {@code term}, following {@code cursor} (from
+     * a previous page's {@code nextCursor}) if given. Terms shorter than three characters match
+     * name prefixes only.
+     */
+    public UserSearchPageDto search(String term, int limit, String cursor) {
+        long start = System.nanoTime();
+        String query = term == null ? "" : term.trim().toLowerCase(Locale.ROOT);
+        if (query.isEmpty()) {
+            return new UserSearchPageDto(List.of(), false, null);
+        }
+        Hit after = decodeCursor(cursor);
+        // Keeps the best limit + 1 hits, worst on top
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 2, RANK.reversed());
+
+        for (Entry entry : byName.subMap(query, true, query + Character.MAX_VALUE, false).values()) {
+            offer(best, new Hit(isOnline(entry.username()) ? 0 : 1, entry), after, limit);
+        }
+        if (query.length() >= GRAM) {
+            Postings candidates = smallestPostings(query);
+            if (candidates != null) {
+                int count = candidates.size;
+                int[] slots = candidates.slots;
+                Entry[] all = entries;
+                for (int i = 0; i < count; i++) {
+                    Entry entry = all[slots[i]];
+                    if (!entry.lower().startsWith(query) && entry.lower().contains(query)) {
+                        offer(best, new Hit(isOnline(entry.username()) ? 2 : 3, entry), after, limit);
+                    }
+                }
+            }
+        }
+
+        List<Hit> ranked = new ArrayList<>(best);
+        ranked.sort(RANK);
+        boolean hasMore = ranked.size() > limit;
+        List<Hit> page = hasMore ? ranked.subList(0, limit) : ranked;
+        List<UserSearchDto> users = new ArrayList<>(page.size());
+        for (Hit hit : page) {
+            users.add(new UserSearchDto(hit.entry().id(), hit.entry().username(), hit.tier() % 2 == 0));
+        }
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1)) : null;
+        searchTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new UserSearchPageDto(users, hasMore, nextCursor);
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.search.refresh-interval-ms:5000}")
+    public void catchUp() {
+        if (!running) {
+            return;
+        }
+        loadAfter(Math.max(0, maxIndexedId - CATCH_UP_OVERLAP));
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        long started = System.nanoTime();
+        loadAfter(0);
+        running = true;
+        log.info("Indexed {} usernames for search in {} ms", entryCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loadAfter(long afterId) {
+        jdbcTemplate.query(USERS_SQL, (RowCallbackHandler) rs -> add(rs.getLong("id"), rs.getString("username")), afterId);
+    }
+
+    private boolean isOnline(String username) {
+        return presenceRegistry.isOnline(username) || clusterRouter.hasRemoteSessions(username);
+    }
+
+    private Postings smallestPostings(String query) {
+        Postings smallest = null;
+        for (String gram : grams(query)) {
+            Postings candidate = postings.get(gram);
+            if (candidate == null) {
+                return null;
+            }
+            if (smallest == null || candidate.size < smallest.size) {
+                smallest = candidate;
+            }
+        }
+        return smallest;
+    }
+
+    private static void offer(PriorityQueue<Hit> best, Hit hit, Hit after, int limit) {
+        if (after != null && RANK.compare(hit, after) <= 0) {
+            return;
+        }
+        best.offer(hit);
+        if (best.size() > limit + 1) {
+            best.poll();
+        }
+    }
+
+    private static Set<String> grams(String lower) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            grams.add(lower.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String key(String lower, String username) {
+        return lower + '\0' + username;
+    }
+
+    private static String encodeCursor(Hit hit) {
+        return hit.tier() + ":" + hit.entry().username();
+    }
+
+    private static Hit decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        int colon = cursor.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String username = cursor.substring(colon + 1);
+        try {
+            int tier = Integer.parseInt(cursor.substring(0, colon));
+            return new Hit(tier, new Entry(0, username, username.toLowerCase(Locale.ROOT)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
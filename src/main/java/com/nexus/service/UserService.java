@@ -1,17 +1,20 @@
 package com.nexus.service;
 
+import com.nexus.cluster.ClusterRouter;
+import com.nexus.model.dto.ContactDto;
 import com.nexus.model.dto.UserDetailsDto;
 import com.nexus.model.dto.UserSearchDto;
+import com.nexus.model.dto.UserSearchPageDto;
 import com.nexus.model.entity.Role;
 import com.nexus.model.entity.User;
+import com.nexus.repository.ConversationRepository;
 import com.nexus.repository.MessageRepository;
 import com.nexus.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,18 +23,13 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final MessageRepository messageRepository;
-    private final WebSocketEventListener webSocketEventListener;
+    private final ConversationRepository conversationRepository;
+    private final PresenceRegistry presenceRegistry;
+    private final ClusterRouter clusterRouter;
+    private final UserSearchIndex userSearchIndex;
 
-    public List<UserSearchDto> searchUsers(String username) {
-        Set<String> onlineUsernames = webSocketEventListener.getOnlineUsers();
-        return userRepository.findByUsernameContainingIgnoreCase(username)
-                .stream()
-                .filter(user -> !"sysadmin".equalsIgnoreCase(user.getUsername())) // Exclude sysadmin from search results
-                .map(user -> {
-                    boolean isOnline = onlineUsernames.contains(user.getUsername());
-                    return new UserSearchDto(user.getId(), user.getUsername(), isOnline);
-                })
-                .collect(Collectors.toList());
+    public UserSearchPageDto searchUsers(String username, int limit, String cursor) {
+        return userSearchIndex.search(username, limit, cursor);
     }
 
     public List<UserDetailsDto> getAllUsers() {
@@ -47,14 +45,8 @@ public class UserService {
     }
 
     public List<UserSearchDto> getContacts(Long userId) {
-        // Təkrarlanmanın qarşısını almaq üçün Set istifadə edirik
-        Set<User> contacts = new HashSet<>();
-
-        // İstifadəçinin mesaj göndərdiyi şəxsləri əlavə edirik
-        contacts.addAll(messageRepository.findRecipientsForSender(userId));
-
-        // İstifadəçiyə mesaj göndərən şəxsləri əlavə edirik
-        contacts.addAll(messageRepository.findSendersForRecipient(userId));
+        // Söhbət açarı hər iki istiqaməti əhatə edir, UNION təkrarlanmanı aradan qaldırır
+        List<User> contacts = userRepository.findAllById(messageRepository.findContactIds(userId));
 
         // Yekun siyahını DTO-ya çevirib qaytarırıq
         return contacts.stream()
@@ -62,19 +54,14 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
-    public List<UserSearchDto> getContactsWithOnlineStatus(Long userId) {
-        Set<User> contacts = new HashSet<>();
-        contacts.addAll(messageRepository.findRecipientsForSender(userId));
-        contacts.addAll(messageRepository.findSendersForRecipient(userId));
-
-        Set<String> onlineUsernames = webSocketEventListener.getOnlineUsers();
-
-        return contacts.stream()
-                .map(user -> {
-                    boolean isOnline = onlineUsernames.contains(user.getUsername());
-                    return new UserSearchDto(user.getId(), user.getUsername(), isOnline);
-                })
-                .collect(Collectors.toList());
+    /**
+     * One page of the user's conversations, most recent first, from the conversations summary.
+     */
+    public List<ContactDto> getContactsWithOnlineStatus(Long userId, int page, int size) {
+        List<ContactDto> contacts = conversationRepository.findContacts(userId, PageRequest.of(page, size));
+        contacts.forEach(contact -> contact.setOnline(presenceRegistry.isOnline(contact.getUsername())
+                || clusterRouter.hasRemoteSessions(contact.getUsername())));
+        return contacts;
     }
 
     private UserDetailsDto mapToUserDetailsDto(User user) {
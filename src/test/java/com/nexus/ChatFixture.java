@@ -0,0 +1,56 @@
+package com.nexus;
+
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageType;
+import com.nexus.model.entity.User;
+import com.nexus.repository.UserRepository;
+import com.nexus.service.MessageService;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.util.HashSet;
+
+/**
+ * Users and messages for integration tests. Add with {@code @Import(ChatFixture.class)}; users
+ * are created on first use and reused afterwards, since tests in one context share the database.
+ */
+@TestComponent
+public class ChatFixture {
+
+    private final UserRepository userRepository;
+    private final MessageService messageService;
+
+    public ChatFixture(UserRepository userRepository, MessageService messageService) {
+        this.userRepository = userRepository;
+        this.messageService = messageService;
+    }
+
+    public User user(String username) {
+        return userRepository.findByUsername(username).orElseGet(() -> {
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword("password");
+            user.setRoles(new HashSet<>());
+            return userRepository.save(user);
+        });
+    }
+
+    public Message send(String sender, String recipient, String content) {
+        return messageService.saveMessage(message(sender, recipient, content));
+    }
+
+    public Message send(String sender, String recipient, MessageType type, String content) {
+        ChatMessageDto dto = message(sender, recipient, content);
+        dto.setType(type);
+        return messageService.saveMessage(dto);
+    }
+
+    public static ChatMessageDto message(String sender, String recipient, String content) {
+        ChatMessageDto dto = new ChatMessageDto();
+        dto.setSenderUsername(sender);
+        dto.setRecipientUsername(recipient);
+        dto.setContent(content);
+        dto.setType(MessageType.TEXT);
+        return dto;
+    }
+}
@@ -0,0 +1,122 @@
+package com.nexus.archive;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.User;
+import com.nexus.service.MessageSearchIndex;
+import com.nexus.service.MessageService;
+import com.nexus.service.RecentMessageCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageArchiveTombstoneTest {
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path archiveDir = Files.createTempDirectory("nexus-archive-tombstones");
+        registry.add("app.archive.dir", archiveDir::toString);
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:archive-tombstones");
+    }
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deletedMessagesDoNotComeBackFromTheArchive() throws IOException {
+        User alice = fixture.user("tombstone-alice");
+        User bob = fixture.user("tombstone-bob");
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(fixture.send("tombstone-alice", "tombstone-bob", "message " + i).getId());
+        }
+        messageService.markConversationRead("tombstone-bob", "tombstone-alice", ids.get(3));
+        jdbcTemplate.update("UPDATE messages SET timestamp = ?", LocalDateTime.now().minusDays(30));
+
+        // Deletes a message after the scan has read it but before its row is deleted
+        AtomicReference<Long> deleteOnScan = new AtomicReference<>(ids.get(1));
+        JdbcTemplate deletingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+                List<T> rows = super.query(sql, rowMapper, args);
+                Long id = deleteOnScan.getAndSet(null);
+                if (id != null) {
+                    try {
+                        messageService.hardDeleteMessage(id);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return rows;
+            }
+        };
+        MessageArchiver archiver = new MessageArchiver(deletingTemplate, namedParameterJdbcTemplate, messageArchive,
+                recentMessageCache, messageSearchIndex, transactionTemplate, new SimpleMeterRegistry(), true, 365, 5000, 1 << 20);
+
+        assertThat(archiver.archive(LocalDateTime.now().minusDays(1))).isEqualTo(3);
+        // The changed row stays, and its archived copy is hidden
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM messages", Long.class)).containsExactly(ids.get(1));
+        assertThat(history(alice, bob)).containsExactly(ids.get(3), ids.get(2), ids.get(0));
+        assertThat(messageArchive.count(alice.getId(), bob.getId())).isEqualTo(3);
+
+        // Archived messages can still be deleted
+        messageService.hardDeleteMessage(ids.get(2));
+        assertThat(history(alice, bob)).containsExactly(ids.get(3), ids.get(0));
+        assertThat(messageArchive.count(alice.getId(), bob.getId())).isEqualTo(2);
+
+        // The next run drops the deleted row without bringing anything back
+        assertThat(archiver.archive(LocalDateTime.now().minusDays(1))).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class)).isZero();
+        assertThat(history(bob, alice)).containsExactly(ids.get(3), ids.get(0));
+    }
+
+    private List<Long> history(User user, User peer) {
+        return messageService.getMessageHistorySlice(user.getId(), peer.getId(), null, null, 10).getMessages().stream()
+                .map(ChatMessageDto::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,112 @@
+package com.nexus.archive;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.MessageSliceDto;
+import com.nexus.model.entity.User;
+import com.nexus.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageArchiverTest {
+
+    private static Path archiveDir;
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) throws IOException {
+        archiveDir = Files.createTempDirectory("nexus-archive");
+        registry.add("app.archive.dir", archiveDir::toString);
+        // Its own database, so the scan only sees the messages of this test
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:archive");
+    }
+
+    @Autowired
+    private MessageArchiver messageArchiver;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void historyContinuesIntoTheArchive() throws IOException {
+        User alice = fixture.user("archive-alice");
+        User bob = fixture.user("archive-bob");
+        User carol = fixture.user("archive-carol");
+        User dave = fixture.user("archive-dave");
+        // Scanned first: an unread message stops its conversation, later read ones stay in the table
+        List<Long> blocked = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            blocked.add(fixture.send("archive-carol", "archive-dave", "message " + i).getId());
+        }
+        jdbcTemplate.update("UPDATE messages SET status = 'READ' WHERE id IN (?, ?)", blocked.get(0), blocked.get(2));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            boolean fromAlice = i % 2 == 0;
+            String sender = fromAlice ? "archive-alice" : "archive-bob";
+            ids.add(fixture.send(sender, fromAlice ? "archive-bob" : "archive-alice", "message from " + sender).getId());
+        }
+        messageService.hardDeleteMessage(ids.get(2));
+        messageService.markConversationRead("archive-alice", "archive-bob", ids.get(6));
+        messageService.markConversationRead("archive-bob", "archive-alice", ids.get(6));
+        jdbcTemplate.update("UPDATE messages SET timestamp = ? WHERE id <= ?", LocalDateTime.now().minusDays(30), ids.get(4));
+
+        assertThat(messageArchiver.archive(LocalDateTime.now().minusDays(1))).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class)).isEqualTo(4);
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()).toList())
+                    .singleElement().asString().endsWith(MessageArchive.SEGMENT_SUFFIX);
+        }
+
+        List<Long> live = List.of(ids.get(6), ids.get(5), ids.get(4), ids.get(3), ids.get(1), ids.get(0));
+        List<Long> scrolled = new ArrayList<>();
+        Long cursor = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            MessageSliceDto slice = messageService.getMessageHistorySlice(alice.getId(), bob.getId(), cursor, null, 2);
+            slice.getMessages().stream().map(ChatMessageDto::getId).forEach(scrolled::add);
+            hasMore = slice.isHasMore();
+            cursor = slice.getNextCursor();
+        }
+        assertThat(scrolled).containsExactlyElementsOf(live);
+
+        MessageSliceDto forward = messageService.getMessageHistorySlice(bob.getId(), alice.getId(), null, ids.get(0), 3);
+        assertThat(forward.getMessages()).extracting(ChatMessageDto::getId).containsExactly(ids.get(1), ids.get(3), ids.get(4));
+        assertThat(forward.isHasMore()).isTrue();
+
+        Page<ChatMessageDto> page = messageService.getMessageHistory(alice.getId(), bob.getId(),
+                PageRequest.of(1, 3, Sort.by("timestamp").descending()));
+        assertThat(page.getTotalElements()).isEqualTo(6);
+        assertThat(page.getContent()).extracting(ChatMessageDto::getId).containsExactly(ids.get(3), ids.get(1), ids.get(0));
+        assertThat(page.getContent().get(0).getContent()).isEqualTo("message from archive-bob");
+
+        MessageSliceDto stopped = messageService.getMessageHistorySlice(carol.getId(), dave.getId(), null, null, 10);
+        assertThat(stopped.getMessages()).extracting(ChatMessageDto::getId).containsExactlyElementsOf(blocked.reversed());
+    }
+}
@@ -0,0 +1,164 @@
+package com.nexus.cluster;
+
+import com.nexus.ChatFixture;
+import com.nexus.NexusApplication;
+import com.nexus.repository.UserRepository;
+import com.nexus.service.MessageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two application contexts in one JVM joined by the loopback bus.
+ */
+class ClusterRouterTest {
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        String group = UUID.randomUUID().toString();
+        nodeA = startNode("node-a", group);
+        nodeB = startNode("node-b", group);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @Test
+    void userMessageIsForwardedToTheNodeHostingTheRecipient() {
+        List<Message<?>> received = captureForwarded(nodeB);
+        Principal bob = user("bob");
+        nodeB.publishEvent(new SessionConnectedEvent(this, connected("session-1", bob), bob));
+
+        nodeA.getBean(SimpMessagingTemplate.class).convertAndSendToUser("bob", "/queue/messages", Map.of("content", "hi"));
+
+        assertThat(received).hasSize(1);
+        Message<?> message = received.get(0);
+        assertThat(message.getHeaders().get(ClusterRouter.ORIGIN_HEADER)).isEqualTo("node-a");
+        assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders())).isEqualTo("/user/bob/queue/messages");
+        assertThat(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).contains("\"content\":\"hi\"");
+    }
+
+    @Test
+    void nothingIsForwardedOnceTheRecipientHasDisconnected() {
+        List<Message<?>> received = captureForwarded(nodeB);
+        Principal bob = user("bob");
+        Message<byte[]> connected = connected("session-1", bob);
+        nodeB.publishEvent(new SessionConnectedEvent(this, connected, bob));
+        nodeB.publishEvent(new SessionDisconnectEvent(this, connected, "session-1", CloseStatus.NORMAL, bob));
+
+        nodeA.getBean(SimpMessagingTemplate.class).convertAndSendToUser("bob", "/queue/messages", Map.of("content", "hi"));
+
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void announcesUsersComingAndGoingOnOtherNodes() {
+        List<String> changes = new CopyOnWriteArrayList<>();
+        nodeA.addApplicationListener((ApplicationListener<PayloadApplicationEvent<?>>) event -> {
+            if (event.getPayload() instanceof ClusterRouter.RemotePresenceChange change) {
+                changes.add(change.username());
+            }
+        });
+        ClusterRouter routerA = nodeA.getBean(ClusterRouter.class);
+        Principal bob = user("bob");
+        Message<byte[]> connected = connected("session-1", bob);
+
+        nodeB.publishEvent(new SessionConnectedEvent(this, connected, bob));
+
+        assertThat(changes).containsExactly("bob");
+        assertThat(routerA.hasRemoteSessions("bob")).isTrue();
+
+        nodeB.publishEvent(new SessionDisconnectEvent(this, connected, "session-1", CloseStatus.NORMAL, bob));
+
+        assertThat(changes).containsExactly("bob", "bob");
+        assertThat(routerA.hasRemoteSessions("bob")).isFalse();
+    }
+
+    @Test
+    void messageIdsFollowTheSequenceAcrossNodes() {
+        ChatFixture fixture = new ChatFixture(nodeA.getBean(UserRepository.class), nodeA.getBean(MessageService.class));
+        fixture.user("ids-alice");
+        fixture.user("ids-bob");
+
+        long first = fixture.send("ids-alice", "ids-bob", "first").getId();
+        // What another node sharing the database would take between the two sends
+        long otherNode = nodeA.getBean(JdbcTemplate.class).queryForObject("SELECT NEXT VALUE FOR message_id_seq", Long.class);
+        long second = fixture.send("ids-alice", "ids-bob", "second").getId();
+
+        assertThat(first).isLessThan(otherNode);
+        assertThat(second).isGreaterThan(otherNode);
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, String group) {
+        return new SpringApplicationBuilder(NexusApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + nodeId,
+                        "app.cluster.transport=loopback",
+                        "app.cluster.loopback.group=" + group,
+                        "app.cluster.node-id=" + nodeId)
+                .run();
+    }
+
+    private static List<Message<?>> captureForwarded(ConfigurableApplicationContext node) {
+        List<Message<?>> received = new CopyOnWriteArrayList<>();
+        node.getBean("brokerChannel", AbstractSubscribableChannel.class).addInterceptor(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                // Only the forwarded copy, not the per-session copies the user destination handler derives from it
+                if (message.getHeaders().containsKey(ClusterRouter.ORIGIN_HEADER)
+                        && destination != null && destination.startsWith("/user/")) {
+                    received.add(message);
+                }
+                return message;
+            }
+        });
+        return received;
+    }
+
+    private static Principal user(String username) {
+        return new UsernamePasswordAuthenticationToken(username, null, List.of());
+    }
+
+    private static Message<byte[]> connected(String sessionId, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId(sessionId);
+        accessor.setUser(user);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
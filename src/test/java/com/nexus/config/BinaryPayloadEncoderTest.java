@@ -0,0 +1,97 @@
+package com.nexus.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryPayloadEncoderTest {
+
+    private static final byte[] JSON = "{\"id\":42,\"content\":\"hello\",\"tags\":[\"a\",\"b\"]}".getBytes(StandardCharsets.UTF_8);
+
+    private final BinaryPayloadEncoder encoder = new BinaryPayloadEncoder();
+
+    @Test
+    void transcodesJsonOnlyForWebSocketSessionsThatAskedForCbor() throws IOException {
+        connect("cbor", TransportHandshakeInterceptor.WEBSOCKET, "application/cbor");
+        connect("json", TransportHandshakeInterceptor.WEBSOCKET, null);
+        connect("sockjs", TransportHandshakeInterceptor.SOCKJS, "application/cbor");
+
+        Message<?> binary = encoder.preSend(frame("cbor", JSON), null);
+        assertThat(binary.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        assertThat(SimpMessageHeaderAccessor.wrap(binary).getFirstNativeHeader(BinaryPayloadEncoder.ENCODING_HEADER))
+                .isEqualTo("cbor");
+        assertThat(new ObjectMapper(new CBORFactory()).readTree((byte[]) binary.getPayload()))
+                .isEqualTo(new ObjectMapper().readTree(JSON));
+
+        Message<?> json = frame("json", JSON);
+        assertThat(encoder.preSend(json, null)).isSameAs(json);
+        Message<?> sockJs = frame("sockjs", JSON);
+        assertThat(encoder.preSend(sockJs, null)).isSameAs(sockJs);
+    }
+
+    @Test
+    void transcodesASharedPayloadOnce() {
+        connect("first", TransportHandshakeInterceptor.WEBSOCKET, "application/cbor");
+        connect("second", TransportHandshakeInterceptor.WEBSOCKET, "application/cbor");
+        byte[] shared = JSON.clone();
+
+        Object first = encoder.preSend(frame("first", shared), null).getPayload();
+        Object second = encoder.preSend(frame("second", shared), null).getPayload();
+        Object copy = encoder.preSend(frame("second", JSON.clone()), null).getPayload();
+
+        assertThat(second).isSameAs(first);
+        assertThat(copy).isNotSameAs(first).isEqualTo(first);
+    }
+
+    @Test
+    void forgetsTheSessionOnDisconnect() {
+        connect("gone", TransportHandshakeInterceptor.WEBSOCKET, "application/cbor");
+        assertThat(encoder.isCborSession("gone")).isTrue();
+
+        encoder.handleSessionDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.withPayload(new byte[0]).build(), "gone", CloseStatus.NORMAL));
+
+        assertThat(encoder.isCborSession("gone")).isFalse();
+        Message<?> message = frame("gone", JSON);
+        assertThat(encoder.preSend(message, null)).isSameAs(message);
+    }
+
+    private void connect(String sessionId, String transport, String accept) {
+        Map<String, Object> attributes = new HashMap<>();
+        new TransportHandshakeInterceptor(transport).beforeHandshake(null, null, null, attributes);
+        assertThat(attributes).containsEntry(TransportHandshakeInterceptor.TRANSPORT_ATTRIBUTE, transport);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(attributes);
+        if (accept != null) {
+            accessor.setNativeHeader(BinaryPayloadEncoder.ACCEPT_CONTENT_TYPE_HEADER, accept);
+        }
+        encoder.negotiate(accessor);
+    }
+
+    private static Message<byte[]> frame(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/user/queue/messages");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,111 @@
+package com.nexus.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the /ws-native handshake over a plain socket, so the test sees exactly which extensions
+ * the server accepted.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "app.websocket.native.permessage-deflate=false")
+@ActiveProfiles("test")
+class NativeWebSocketNegotiationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void declinesDeflateWhenDisabledAndCountsFrames() throws Exception {
+        byte[] connect = "CONNECT\naccept-version:1.2\nhost:localhost\n\n\0".getBytes(StandardCharsets.UTF_8);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + contextPath + "/ws-native HTTP/1.1\r\n"
+                    + "Host: localhost:" + port + "\r\n"
+                    + "Origin: http://localhost:3000\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(new byte[16]) + "\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n"
+                    + "Sec-WebSocket-Protocol: v12.stomp\r\n"
+                    + "Sec-WebSocket-Extensions: permessage-deflate; client_max_window_bits\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String response = readHeaders(socket.getInputStream());
+            assertThat(response).startsWith("HTTP/1.1 101");
+            assertThat(response.toLowerCase()).doesNotContain("sec-websocket-extensions");
+
+            out.write(maskedTextFrame(connect));
+            out.flush();
+
+            DistributionSummary inbound = awaitInbound();
+            assertThat(inbound.count()).isEqualTo(1);
+            assertThat(inbound.totalAmount()).isEqualTo(connect.length);
+        }
+    }
+
+    private DistributionSummary awaitInbound() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            DistributionSummary summary = meterRegistry.find("websocket.frames")
+                    .tags("transport", TransportHandshakeInterceptor.WEBSOCKET, "direction", "inbound", "compression", "none")
+                    .summary();
+            if ((summary != null && summary.count() > 0) || System.currentTimeMillis() > deadline) {
+                assertThat(summary).isNotNull();
+                return summary;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            headers.write(b);
+            matched = (b == '\r' && matched % 2 == 0) || (b == '\n' && matched % 2 == 1) ? matched + 1 : 0;
+        }
+        return headers.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] maskedTextFrame(byte[] payload) {
+        byte[] mask = {1, 2, 3, 4};
+        byte[] frame = new byte[2 + mask.length + payload.length];
+        frame[0] = (byte) 0x81; // FIN, text
+        frame[1] = (byte) (0x80 | payload.length); // masked, short length
+        System.arraycopy(mask, 0, frame, 2, mask.length);
+        for (int i = 0; i < payload.length; i++) {
+            frame[2 + mask.length + i] = (byte) (payload[i] ^ mask[i % mask.length]);
+        }
+        return frame;
+    }
+}
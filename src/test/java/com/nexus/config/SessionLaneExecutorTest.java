@@ -0,0 +1,127 @@
+package com.nexus.config;
+
+import com.nexus.service.OutboundMessageSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionLaneExecutorTest {
+
+    private static final int SOFT_LIMIT = 4;
+    private static final int HARD_LIMIT = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionLaneExecutor executor = new SessionLaneExecutor(new WebSocketSessionRegistry(), meterRegistry,
+            SOFT_LIMIT, HARD_LIMIT, SessionLaneExecutor.OverflowPolicy.DROP_LOW_PRIORITY_THEN_DISCONNECT);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void writesEachSessionsFramesInOrder() throws InterruptedException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            executor.execute(frame("s1", "s1-" + i, false, null));
+            expected.add("s1-" + i);
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        executor.runAfterQueued("s1", done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).containsExactlyElementsOf(expected);
+        assertThat(executor.getBacklog("s1")).isZero();
+    }
+
+    @Test
+    void aBlockedSessionDoesNotDelayOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(frame("slow", "slow-0", false, release));
+        executor.execute(frame("slow", "slow-1", false, null));
+        CountDownLatch fastDone = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(frame("fast", "fast-" + i, false, null));
+        }
+        executor.runAfterQueued("fast", fastDone::countDown);
+
+        assertThat(fastDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).doesNotContain("slow-0", "slow-1").hasSize(10);
+
+        release.countDown();
+        CountDownLatch slowDone = new CountDownLatch(1);
+        executor.runAfterQueued("slow", slowDone::countDown);
+        assertThat(slowDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(written).endsWith("slow-0", "slow-1");
+    }
+
+    @Test
+    void dropsDroppableFramesPastTheSoftLimitAndEverythingPastTheHardLimit() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(frame("busy", "busy-0", false, release));
+        for (int i = 1; i < SOFT_LIMIT; i++) {
+            executor.execute(frame("busy", "busy-" + i, false, null));
+        }
+        executor.execute(frame("busy", "typing-started", true, null));
+        for (int i = SOFT_LIMIT; i < HARD_LIMIT; i++) {
+            executor.execute(frame("busy", "busy-" + i, false, null));
+        }
+        assertThat(executor.getBacklog("busy")).isEqualTo(HARD_LIMIT);
+        executor.execute(frame("busy", "over-the-limit", false, null));
+
+        release.countDown();
+        CountDownLatch done = new CountDownLatch(1);
+        executor.runAfterQueued("busy", done::countDown);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(written).hasSize(HARD_LIMIT).doesNotContain("typing-started", "over-the-limit");
+        assertThat(meterRegistry.counter("websocket.outbound.dropped").count()).isEqualTo(2);
+    }
+
+    private MessageHandlingRunnable frame(String sessionId, String label, boolean droppable, CountDownLatch blockUntil) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        if (droppable) {
+            accessor.setHeader(OutboundMessageSender.DROPPABLE_HEADER, Boolean.TRUE);
+        }
+        Message<String> message = MessageBuilder.createMessage(label, accessor.getMessageHeaders());
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return ignored -> { };
+            }
+
+            @Override
+            public void run() {
+                if (blockUntil != null) {
+                    try {
+                        blockUntil.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                written.add(label);
+            }
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.nexus.config;
+
+import com.nexus.NexusApplication;
+import com.nexus.model.entity.User;
+import com.nexus.repository.UserRepository;
+import com.nexus.service.JwtService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Authenticated requests that block for {@value #BLOCKING_MS} ms (standing in for a remote call)
+ * and then run a JPA query, at a concurrency above Tomcat's default 200 worker threads. Compares
+ * throughput, p99 latency and peak platform threads with and without virtual threads.
+ * Run with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+class VirtualThreadLoadBenchmark {
+
+    private static final int CONCURRENCY = 400;
+    private static final int WARMUP = 2_000;
+    private static final int REQUESTS = 10_000;
+    private static final long BLOCKING_MS = 20;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void virtualThreadsServeMoreBlockingRequestsThanThePlatformPool() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        assertThat(virtual.requestsPerSecond()).isGreaterThan(platform.requestsPerSecond());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NexusApplication.class, BlockingEndpoint.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:vt-" + mode,
+                        "spring.threads.virtual.enabled=" + virtualThreads)
+                .run();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            String port = context.getEnvironment().getProperty("local.server.port");
+            String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+            URI uri = URI.create("http://localhost:" + port + contextPath + "/benchmark/blocking");
+            String token = tokenFor(context, "vt-bench");
+            HttpClient http = HttpClient.newBuilder().executor(clients).build();
+            HttpRequest request = HttpRequest.newBuilder(uri).header("X-Authorization", "Bearer " + token).GET().build();
+
+            fire(http, request, clients, WARMUP);
+            threads.resetPeakThreadCount();
+            long start = System.nanoTime();
+            long[] latencies = fire(http, request, clients, REQUESTS);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            Result result = new Result(REQUESTS / (elapsed / 1e9),
+                    latencies[(int) (latencies.length * 0.99)] / 1e6,
+                    threads.getPeakThreadCount());
+            System.out.printf("%-9s %8.0f req/s %8.1f ms p99 %6d peak platform threads%n",
+                    mode, result.requestsPerSecond(), result.p99Millis(), result.peakThreads());
+            return result;
+        }
+    }
+
+    private static long[] fire(HttpClient http, HttpRequest request, ExecutorService clients, int count) throws InterruptedException {
+        long[] latencies = new long[count];
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            int index = i;
+            clients.execute(() -> {
+                long sent = System.nanoTime();
+                try {
+                    if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    latencies[index] = System.nanoTime() - sent;
+                    inFlight.release();
+                }
+            });
+        }
+        inFlight.acquire(CONCURRENCY);
+        assertThat(failures).hasValue(0);
+        return latencies;
+    }
+
+    private static String tokenFor(ConfigurableApplicationContext context, String username) {
+        UserRepository users = context.getBean(UserRepository.class);
+        User user = users.findByUsername(username).orElseGet(() -> {
+            User created = new User();
+            created.setUsername(username);
+            created.setPassword("password");
+            created.setRoles(new HashSet<>());
+            return users.save(created);
+        });
+        return context.getBean(JwtService.class).generateToken(user);
+    }
+
+    @RestController
+    public static class BlockingEndpoint {
+
+        private final UserRepository userRepository;
+
+        public BlockingEndpoint(UserRepository userRepository) {
+            this.userRepository = userRepository;
+        }
+
+        @GetMapping("/benchmark/blocking")
+        public long blocking() throws InterruptedException {
+            Thread.sleep(BLOCKING_MS);
+            return userRepository.count();
+        }
+    }
+
+    private record Result(double requestsPerSecond, double p99Millis, int peakThreads) {
+    }
+}
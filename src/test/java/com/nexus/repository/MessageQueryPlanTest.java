@@ -0,0 +1,65 @@
+package com.nexus.repository;
+
+import com.nexus.model.entity.MessageType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the message queries, captures the SQL Hibernate generated for them and checks with
+ * EXPLAIN that each one is answered from the index added for it rather than a table scan.
+ */
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nexus.repository.RecordingStatementInspector")
+@ActiveProfiles("test")
+class MessageQueryPlanTest {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void keysetHistoryUsesTheConversationIndex() {
+        String sql = capture(() -> messageRepository.findConversationBeforeByKey(1L, 2L, 100L, PageRequest.of(0, 20)));
+
+        assertThat(sql).doesNotContainIgnoringCase(" or ");
+        assertThat(explain(sql, 1L, 2L, 100L, 20)).containsIgnoringCase("IDX_MESSAGES_CONVERSATION_LIVE");
+    }
+
+    @Test
+    void contactsUseBothSidesOfTheConversationKey() {
+        String sql = capture(() -> messageRepository.findContactIds(1L));
+
+        assertThat(explain(sql, 1L, 1L))
+                .containsIgnoringCase("IDX_MESSAGES_CONVERSATION_LOW_HIGH")
+                .containsIgnoringCase("IDX_MESSAGES_CONVERSATION_HIGH_LOW");
+    }
+
+    @Test
+    void mediaUsesTheTypeIndex() {
+        String sql = capture(() -> messageRepository.findMediaByTypeIn(List.of(MessageType.IMAGE)));
+
+        assertThat(explain(sql, MessageType.IMAGE.name())).containsIgnoringCase("IDX_MESSAGES_TYPE_TIMESTAMP");
+    }
+
+    private String capture(Runnable query) {
+        RecordingStatementInspector.clear();
+        query.run();
+        List<String> statements = RecordingStatementInspector.statements();
+        assertThat(statements).hasSize(1);
+        return statements.get(0);
+    }
+
+    private String explain(String sql, Object... parameters) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, parameters));
+    }
+}
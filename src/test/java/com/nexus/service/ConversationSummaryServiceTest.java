@@ -0,0 +1,66 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ContactDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class ConversationSummaryServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void contactsFollowSendsReadsAndDeletes() throws IOException, InterruptedException {
+        User alice = fixture.user("summary-alice");
+        fixture.user("summary-bob");
+        fixture.user("summary-carol");
+
+        fixture.send("summary-bob", "summary-alice", "hi alice");
+        Message fromBob = fixture.send("summary-bob", "summary-alice", "are you there?");
+        Thread.sleep(5);
+        Message fromCarol = fixture.send("summary-carol", "summary-alice", "x".repeat(150));
+
+        List<ContactDto> contacts = userService.getContactsWithOnlineStatus(alice.getId(), 0, 10);
+        assertThat(contacts).extracting(ContactDto::getUsername).containsExactly("summary-carol", "summary-bob");
+        assertThat(contacts.get(0).getLastMessageId()).isEqualTo(fromCarol.getId());
+        assertThat(contacts.get(0).getLastMessagePreview()).hasSize(ConversationSummaryService.PREVIEW_LENGTH);
+        assertThat(contacts.get(1).getUnreadCount()).isEqualTo(2);
+
+        Thread.sleep(5);
+        fixture.send("summary-alice", "summary-bob", "yes");
+        messageService.markConversationRead("summary-alice", "summary-bob", fromBob.getId());
+        messageService.updateStatus(fromCarol.getId(), MessageStatus.READ);
+
+        contacts = userService.getContactsWithOnlineStatus(alice.getId(), 0, 10);
+        assertThat(contacts).extracting(ContactDto::getUsername).containsExactly("summary-bob", "summary-carol");
+        assertThat(contacts).extracting(ContactDto::getUnreadCount).containsExactly(0, 0);
+        assertThat(contacts.get(0).getLastMessagePreview()).isEqualTo("yes");
+
+        messageService.hardDeleteMessage(fromCarol.getId());
+        ContactDto carol = userService.getContactsWithOnlineStatus(alice.getId(), 1, 1).get(0);
+        assertThat(carol.getUsername()).isEqualTo("summary-carol");
+        assertThat(carol.getLastMessageId()).isNull();
+        assertThat(carol.getLastMessageAt()).isNotNull();
+    }
+}
@@ -0,0 +1,149 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.MessageStatusBatchDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+// Windows are flushed by hand.
+@SpringBootTest(properties = "app.delivery-ack.window-ms=3600000")
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class DeliveryAckServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private DeliveryAckService deliveryAckService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    @Autowired
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void reportsOnlyTheMessagesThatMovedToDelivered() {
+        fixture.user("ack-alice");
+        fixture.user("ack-bob");
+        fixture.user("ack-carol");
+        Message first = fixture.send("ack-bob", "ack-alice", "one");
+        Message read = fixture.send("ack-bob", "ack-alice", "two");
+        Message second = fixture.send("ack-bob", "ack-alice", "three");
+        Message fromCarol = fixture.send("ack-carol", "ack-alice", "not bob's");
+        messageService.updateStatus(read.getId(), MessageStatus.READ);
+        List<MessageStatusBatchDto> toBob = capture("/user/ack-bob/queue/status");
+
+        deliveryAckService.acknowledge("ack-alice", "ack-bob", List.of(first.getId(), read.getId()));
+        deliveryAckService.acknowledge("ack-alice", "ack-bob", List.of(second.getId(), fromCarol.getId()));
+        deliveryAckService.flush();
+        deliveryAckService.acknowledge("ack-alice", "ack-bob", List.of(first.getId()));
+        deliveryAckService.flush();
+
+        assertThat(toBob).singleElement().satisfies(frame -> {
+            assertThat(frame.getMessageIds()).containsExactlyInAnyOrder(first.getId(), second.getId());
+            assertThat(frame.getStatus()).isEqualTo(MessageStatus.DELIVERED);
+        });
+        assertThat(statusOf(first)).isEqualTo(MessageStatus.DELIVERED);
+        assertThat(statusOf(read)).isEqualTo(MessageStatus.READ);
+        assertThat(statusOf(fromCarol)).isEqualTo(MessageStatus.SENT);
+    }
+
+    @Test
+    void keepsAcksWhoseUpdateFailedForTheNextWindow() {
+        fixture.user("ack-dave");
+        fixture.user("ack-erin");
+        Message message = fixture.send("ack-erin", "ack-dave", "hello");
+        List<MessageStatusBatchDto> toErin = capture("/user/ack-erin/queue/status");
+
+        MessageRepository failingOnce = mock(MessageRepository.class, delegatesTo(messageRepository));
+        doAnswer(invocation -> {
+            throw new QueryTimeoutException("database unavailable");
+        }).doAnswer(delegatesTo(messageRepository))
+                .when(failingOnce).advanceStatus(any(), any(), any(), any(), any());
+        DeliveryAckService service = new DeliveryAckService(failingOnce, userIdentityCache, messagingTemplate,
+                transactionTemplate, recentMessageCache, writeBehindService, 500);
+
+        service.acknowledge("ack-dave", "ack-erin", List.of(message.getId()));
+        service.flush();
+
+        assertThat(toErin).isEmpty();
+        assertThat(service.pendingCount()).isEqualTo(1);
+        assertThat(statusOf(message)).isEqualTo(MessageStatus.SENT);
+
+        service.flush();
+
+        assertThat(toErin).singleElement()
+                .satisfies(frame -> assertThat(frame.getMessageIds()).containsExactly(message.getId()));
+        assertThat(service.pendingCount()).isZero();
+        assertThat(statusOf(message)).isEqualTo(MessageStatus.DELIVERED);
+    }
+
+    private MessageStatus statusOf(Message message) {
+        return messageRepository.findById(message.getId()).orElseThrow().getStatus();
+    }
+
+    private List<MessageStatusBatchDto> capture(String destination) {
+        List<MessageStatusBatchDto> pushed = new CopyOnWriteArrayList<>();
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, MessageChannel channel) {
+                if (destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    try {
+                        pushed.add(objectMapper.readValue((byte[]) message.getPayload(), MessageStatusBatchDto.class));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return message;
+            }
+        });
+        return pushed;
+    }
+}
@@ -0,0 +1,123 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.repository.RecordingStatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nexus.repository.RecordingStatementInspector")
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class EphemeralMessageServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private EphemeralMessageService ephemeralMessageService;
+
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+
+    @Autowired
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void holdsMessagesForAnOfflineRecipientUntilItSubscribesWithoutTouchingTheDatabase() {
+        fixture.user("eph-alice");
+        fixture.user("eph-bob");
+        userIdentityCache.get("eph-alice");
+        userIdentityCache.get("eph-bob");
+        List<ChatMessageDto> toAlice = capture("/user/eph-alice/queue/messages");
+        List<ChatMessageDto> toBob = capture("/user/eph-bob/queue/messages");
+        RecordingStatementInspector.clear();
+
+        ChatMessageDto held = ephemeralMessageService.send("eph-alice", message("while offline"));
+
+        assertThat(held.getId()).isNegative();
+        assertThat(held.isEphemeral()).isTrue();
+        assertThat(ephemeralMessageService.pendingCount()).isEqualTo(1);
+        assertThat(toBob).isEmpty();
+        assertThat(toAlice).extracting(ChatMessageDto::getStatus).containsExactly(MessageStatus.SENT);
+
+        ephemeralMessageService.afterMessageHandled(subscription(SimpMessageType.SUBSCRIBE), null,
+                mock(SimpleBrokerMessageHandler.class), null);
+
+        assertThat(ephemeralMessageService.pendingCount()).isZero();
+        assertThat(toBob).extracting(ChatMessageDto::getId).containsExactly(held.getId());
+        assertThat(toBob.get(0).getStatus()).isEqualTo(MessageStatus.DELIVERED);
+
+        ChatMessageDto direct = ephemeralMessageService.send("eph-alice", message("while online"));
+
+        assertThat(direct.getStatus()).isEqualTo(MessageStatus.DELIVERED);
+        assertThat(toBob).extracting(ChatMessageDto::getId).containsExactly(held.getId(), direct.getId());
+        assertThat(ephemeralMessageService.pendingCount()).isZero();
+
+        ephemeralMessageService.preSend(subscription(SimpMessageType.UNSUBSCRIBE), null);
+        ephemeralMessageService.send("eph-alice", message("offline again"));
+
+        assertThat(ephemeralMessageService.pendingCount()).isEqualTo(1);
+        assertThat(RecordingStatementInspector.statements()).isEmpty();
+    }
+
+    // Names someone else as the sender; the authenticated eph-alice is used instead
+    private static ChatMessageDto message(String content) {
+        ChatMessageDto dto = ChatFixture.message("eph-mallory", "eph-bob", content);
+        dto.setEphemeral(true);
+        return dto;
+    }
+
+    private static Message<byte[]> subscription(SimpMessageType type) {
+        Principal bob = () -> "eph-bob";
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId("eph-session");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/user/eph-bob/queue/messages");
+        accessor.setUser(bob);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private List<ChatMessageDto> capture(String destination) {
+        List<ChatMessageDto> pushed = new CopyOnWriteArrayList<>();
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    try {
+                        pushed.add(objectMapper.readValue((byte[]) message.getPayload(), ChatMessageDto.class));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return message;
+            }
+        });
+        return pushed;
+    }
+}
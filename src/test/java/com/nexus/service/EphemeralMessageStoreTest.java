@@ -0,0 +1,29 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EphemeralMessageStoreTest {
+
+    private final EphemeralMessageStore store = new EphemeralMessageStore(10, 10, 100);
+
+    @Test
+    void drainHandsBackExpiredMessagesInsteadOfDroppingThem() {
+        ChatMessageDto old = ChatFixture.message("alice", "bob", "old");
+        ChatMessageDto fresh = ChatFixture.message("alice", "bob", "fresh");
+        store.hold(old, 0);
+        store.hold(fresh, 50);
+
+        List<ChatMessageDto> expired = new ArrayList<>();
+        assertThat(store.drain("bob", 120, expired::add)).containsExactly(fresh);
+
+        assertThat(expired).containsExactly(old);
+        assertThat(store.size()).isZero();
+    }
+}
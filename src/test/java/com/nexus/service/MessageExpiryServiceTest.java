@@ -0,0 +1,126 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Ticks are driven by hand.
+@SpringBootTest(properties = {
+        "app.expiry.tick-ms=3600000",
+        "app.expiry.chunk-size=2"
+})
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageExpiryServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageExpiryService messageExpiryService;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void timingWheelCollectsWhatIsDueAndRejectsTimesPastTheHorizon() {
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(10, 100);
+
+        assertThat(wheel.schedule(95)).isTrue();
+        assertThat(wheel.schedule(103)).isTrue();
+        assertThat(wheel.schedule(109)).isTrue();
+        assertThat(wheel.schedule(110)).isFalse();
+
+        assertThat(wheel.advance(102)).isEqualTo(1);
+        assertThat(wheel.advance(105)).isEqualTo(1);
+        assertThat(wheel.horizon()).isEqualTo(116);
+        assertThat(wheel.schedule(112)).isTrue();
+        assertThat(wheel.advance(200)).isEqualTo(2);
+        assertThat(wheel.scheduled()).isZero();
+    }
+
+    @Test
+    void deletesDueMessagesInChunksAndNotifiesBothParticipants() {
+        User alice = fixture.user("expiry-alice");
+        fixture.user("expiry-bob");
+        List<ChatMessageDto> toBob = capture("/user/expiry-bob/queue/messages");
+        List<ChatMessageDto> toAlice = capture("/user/expiry-alice/queue/messages");
+
+        Message kept = fixture.send("expiry-bob", "expiry-alice", "stays");
+        Message first = fixture.send("expiry-bob", "expiry-alice", "one");
+        Message second = fixture.send("expiry-bob", "expiry-alice", "two");
+        Message third = fixture.send("expiry-bob", "expiry-alice", "three");
+        Message later = fixture.send("expiry-bob", "expiry-alice", "not yet");
+        jdbcTemplate.update("UPDATE messages SET expires_at = ? WHERE id IN (?, ?, ?)",
+                LocalDateTime.now().minusSeconds(1), first.getId(), second.getId(), third.getId());
+        jdbcTemplate.update("UPDATE messages SET expires_at = ? WHERE id = ?", LocalDateTime.now().plusHours(1), later.getId());
+
+        assertThat(messageExpiryService.expireDue()).isEqualTo(3);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM messages WHERE id IN (?, ?, ?, ?, ?)", Long.class,
+                kept.getId(), first.getId(), second.getId(), third.getId(), later.getId()))
+                .containsExactlyInAnyOrder(kept.getId(), later.getId());
+        assertThat(toBob).extracting(ChatMessageDto::getId).containsExactlyInAnyOrder(first.getId(), second.getId(), third.getId());
+        assertThat(toAlice).extracting(ChatMessageDto::getId).containsExactlyInAnyOrder(first.getId(), second.getId(), third.getId());
+        assertThat(toAlice).allMatch(ChatMessageDto::isDeleted);
+        assertThat(unreadCountService.getUnreadCounts(alice.getId()).getTotal()).isEqualTo(2);
+        assertThat(messageExpiryService.expireDue()).isZero();
+    }
+
+    @Test
+    void dueMessagesAreReadFromTheExpiryIndex() {
+        LocalDateTime now = LocalDateTime.now();
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + MessageExpiryService.DUE_SQL, String.class, now, 10));
+
+        assertThat(plan).containsIgnoringCase("IDX_MESSAGES_EXPIRES_AT");
+    }
+
+    private List<ChatMessageDto> capture(String destination) {
+        List<ChatMessageDto> pushed = new CopyOnWriteArrayList<>();
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, MessageChannel channel) {
+                if (destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    try {
+                        ChatMessageDto dto = objectMapper.readValue((byte[]) message.getPayload(), ChatMessageDto.class);
+                        if (dto.isDeleted()) {
+                            pushed.add(dto);
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return message;
+            }
+        });
+        return pushed;
+    }
+}
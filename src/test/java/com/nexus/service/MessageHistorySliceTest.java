@@ -0,0 +1,77 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.controller.MessageController;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.MessageSliceDto;
+import com.nexus.model.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageHistorySliceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageController messageController;
+
+    @Test
+    void scrollsBothDirectionsOfAConversationWithoutGapsOrDuplicates() throws IOException {
+        User alice = fixture.user("slice-alice");
+        User bob = fixture.user("slice-bob");
+        fixture.user("slice-carol");
+        List<Long> conversation = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            boolean fromAlice = i % 2 == 0;
+            conversation.add(fixture.send(fromAlice ? "slice-alice" : "slice-bob", fromAlice ? "slice-bob" : "slice-alice", "hello").getId());
+            fixture.send("slice-carol", "slice-alice", "hello");
+        }
+        messageService.hardDeleteMessage(fixture.send("slice-alice", "slice-bob", "hello").getId());
+
+        List<Long> scrolled = new ArrayList<>();
+        Long cursor = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            MessageSliceDto slice = messageService.getMessageHistorySlice(alice.getId(), bob.getId(), cursor, null, 3);
+            slice.getMessages().stream().map(ChatMessageDto::getId).forEach(scrolled::add);
+            hasMore = slice.isHasMore();
+            cursor = slice.getNextCursor();
+        }
+
+        assertThat(scrolled).containsExactlyElementsOf(conversation.reversed());
+
+        MessageSliceDto newer = messageService.getMessageHistorySlice(bob.getId(), alice.getId(), null, conversation.get(4), 3);
+        assertThat(newer.getMessages()).extracting(ChatMessageDto::getId).containsExactly(conversation.get(5), conversation.get(6));
+        assertThat(newer.isHasMore()).isFalse();
+    }
+
+    @Test
+    void onlyParticipantsCanScrollAConversation() {
+        User alice = fixture.user("slice-alice");
+        User bob = fixture.user("slice-bob");
+        User carol = fixture.user("slice-carol");
+        fixture.send("slice-alice", "slice-bob", "private");
+
+        assertThat(messageController.scrollMessageHistory(carol, alice.getId(), bob.getId(), null, null, 50).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(messageController.scrollMessageHistory(bob, alice.getId(), bob.getId(), null, null, 50).getBody().getMessages())
+                .isNotEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.dto.MessageSliceDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageType;
+import com.nexus.model.entity.User;
+import com.nexus.repository.RecordingStatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * History and media reads are single projection queries: the statement count does not depend on
+ * how many messages or distinct users a page holds.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nexus.repository.RecordingStatementInspector",
+        "app.messages.recent-cache.enabled=false"
+})
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageReadStatementCountTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Test
+    void historyAndMediaPagesUseAFixedNumberOfStatements() {
+        User alice = fixture.user("projection-alice");
+        User bob = fixture.user("projection-bob");
+        Message last = null;
+        for (int i = 0; i < 12; i++) {
+            last = fixture.send(i % 2 == 0 ? "projection-alice" : "projection-bob",
+                    i % 2 == 0 ? "projection-bob" : "projection-alice", MessageType.TEXT, "message " + i);
+        }
+        fixture.send("projection-alice", "projection-bob", MessageType.IMAGE, "/files/projection.png");
+
+        RecordingStatementInspector.clear();
+        Page<ChatMessageDto> page = messageService.getMessageHistory(alice.getId(), bob.getId(),
+                PageRequest.of(1, 5, Sort.by("timestamp").descending()));
+        assertThat(page.getContent()).hasSize(5)
+                .allSatisfy(dto -> assertThat(dto.getSenderUsername()).startsWith("projection-"));
+        assertThat(RecordingStatementInspector.statements()).hasSize(2); // page + count
+
+        RecordingStatementInspector.clear();
+        MessageSliceDto slice = messageService.getMessageHistorySlice(alice.getId(), bob.getId(), last.getId(), null, 5);
+        assertThat(slice.getMessages()).hasSize(5);
+        assertThat(RecordingStatementInspector.statements()).hasSize(1);
+
+        RecordingStatementInspector.clear();
+        List<ChatMessageDto> media = messageService.getMediaMessages("image");
+        assertThat(media).extracting(ChatMessageDto::getContent).contains("/files/projection.png");
+        assertThat(RecordingStatementInspector.statements()).hasSize(1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.ChatFixture;
+import com.nexus.controller.ChatController;
+import com.nexus.model.dto.StatusWatermarkDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageReadWatermarkTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void marksOnlyTheSendersMessagesUpToTheWatermark() {
+        fixture.user("watermark-alice");
+        fixture.user("watermark-bob");
+        Message first = fixture.send("watermark-bob", "watermark-alice", "one");
+        Message second = fixture.send("watermark-bob", "watermark-alice", "two");
+        Message own = fixture.send("watermark-alice", "watermark-bob", "mine");
+        Message third = fixture.send("watermark-bob", "watermark-alice", "three");
+
+        assertThat(messageService.markConversationRead("watermark-alice", "watermark-bob", own.getId())).isEqualTo(2);
+        assertThat(messageService.markConversationRead("watermark-alice", "watermark-bob", own.getId())).isZero();
+
+        assertThat(statusOf(first)).isEqualTo(MessageStatus.READ);
+        assertThat(statusOf(second)).isEqualTo(MessageStatus.READ);
+        assertThat(statusOf(own)).isEqualTo(MessageStatus.SENT);
+        assertThat(statusOf(third)).isEqualTo(MessageStatus.SENT);
+    }
+
+    @Test
+    void rejectsAMissingWatermark() {
+        fixture.user("watermark-carol");
+        fixture.user("watermark-dave");
+
+        assertThatThrownBy(() -> messageService.markConversationRead("watermark-carol", "watermark-dave", null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void tellsTheSenderOnceForTheWholeRange() {
+        fixture.user("watermark-erin");
+        fixture.user("watermark-frank");
+        fixture.send("watermark-frank", "watermark-erin", "one");
+        Message last = fixture.send("watermark-frank", "watermark-erin", "two");
+        List<StatusWatermarkDto> toFrank = capture("/user/watermark-frank/queue/status");
+        Principal erin = () -> "watermark-erin";
+
+        chatController.markConversationRead(new StatusWatermarkDto("watermark-frank", last.getId(), null), erin);
+        chatController.markConversationRead(new StatusWatermarkDto("watermark-frank", last.getId(), null), erin);
+
+        assertThat(toFrank).singleElement().satisfies(frame -> {
+            assertThat(frame.getPeerUsername()).isEqualTo("watermark-erin");
+            assertThat(frame.getUpToMessageId()).isEqualTo(last.getId());
+            assertThat(frame.getStatus()).isEqualTo(MessageStatus.READ);
+        });
+    }
+
+    private MessageStatus statusOf(Message message) {
+        return messageRepository.findById(message.getId()).orElseThrow().getStatus();
+    }
+
+    private List<StatusWatermarkDto> capture(String destination) {
+        List<StatusWatermarkDto> pushed = new CopyOnWriteArrayList<>();
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, MessageChannel channel) {
+                if (destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    try {
+                        pushed.add(objectMapper.readValue((byte[]) message.getPayload(), StatusWatermarkDto.class));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return message;
+            }
+        });
+        return pushed;
+    }
+}
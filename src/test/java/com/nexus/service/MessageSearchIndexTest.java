@@ -0,0 +1,120 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.MessageSearchHitDto;
+import com.nexus.model.dto.MessageSearchPageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageSearchIndexTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findsOnlyTheCallersMessagesAndFollowsDeletes() throws IOException {
+        User alice = fixture.user("search-alice");
+        User bob = fixture.user("search-bob");
+        fixture.user("search-carol");
+        Message toBob = fixture.send("search-alice", "search-bob", "Lunch at the harbour tomorrow?");
+        Message fromCarol = fixture.send("search-carol", "search-alice", "The harbour lunch was great");
+        Message deleted = fixture.send("search-bob", "search-alice", "harbour lunch cancelled");
+        fixture.send("search-carol", "search-bob", "harbour lunch without alice");
+        messageService.hardDeleteMessage(deleted.getId());
+        messageSearchIndex.refresh();
+
+        assertThat(messageSearchIndex.search(alice.getId(), null, "LUNCH harbour", 0, 10).getHits())
+                .extracting(MessageSearchHitDto::getId)
+                .containsExactlyInAnyOrder(toBob.getId(), fromCarol.getId());
+        assertThat(messageSearchIndex.search(alice.getId(), bob.getId(), "lunch", 0, 10).getHits())
+                .extracting(MessageSearchHitDto::getId)
+                .containsExactly(toBob.getId());
+        assertThat(messageSearchIndex.search(alice.getId(), null, "lunch dinner", 0, 10).getHits()).isEmpty();
+    }
+
+    @Test
+    void pagesThroughEqualHitsNewestFirst() {
+        User dave = fixture.user("search-dave");
+        fixture.user("search-erin");
+        Message first = fixture.send("search-dave", "search-erin", "quarterly report");
+        Message second = fixture.send("search-erin", "search-dave", "quarterly report");
+        Message third = fixture.send("search-dave", "search-erin", "quarterly report");
+        messageSearchIndex.refresh();
+
+        MessageSearchPageDto page = messageSearchIndex.search(dave.getId(), null, "quarterly", 0, 2);
+        assertThat(page.getHits()).extracting(MessageSearchHitDto::getId).containsExactly(third.getId(), second.getId());
+        assertThat(page.isHasMore()).isTrue();
+
+        MessageSearchPageDto next = messageSearchIndex.search(dave.getId(), null, "quarterly", 1, 2);
+        assertThat(next.getHits()).extracting(MessageSearchHitDto::getId).containsExactly(first.getId());
+        assertThat(next.isHasMore()).isFalse();
+    }
+
+    @Test
+    void rebuildDoesNotBringBackAMessageDeletedWhileItRan() throws InterruptedException {
+        User frank = fixture.user("search-frank");
+        fixture.user("search-gina");
+        Message kept = fixture.send("search-frank", "search-gina", "regatta tickets");
+        Message deleted = fixture.send("search-gina", "search-frank", "regatta tickets sold out");
+
+        // Deletes the message after the rebuild has read it but before it is indexed
+        AtomicReference<MessageSearchIndex> index = new AtomicReference<>();
+        AtomicReference<Long> deleteOnRead = new AtomicReference<>();
+        JdbcTemplate deletingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public <T> T query(String sql, ResultSetExtractor<T> rse, Object... args) {
+                return super.query(sql, (ResultSetExtractor<T>) rs -> {
+                    Long id = deleteOnRead.getAndSet(null);
+                    if (id != null) {
+                        jdbcTemplate.update("UPDATE messages SET deleted = true WHERE id = ?", id);
+                        index.get().remove(List.of(id));
+                    }
+                    return rse.extractData(rs);
+                }, args);
+            }
+        };
+        index.set(new MessageSearchIndex(deletingTemplate, new SimpleMeterRegistry(), true, "", 2000, 1000));
+        index.get().start();
+        try {
+            // The initial rebuild runs in the background; wait until ours can run alone
+            while (!index.get().rebuild()) {
+                Thread.sleep(10);
+            }
+            deleteOnRead.set(deleted.getId());
+            assertThat(index.get().rebuild()).isTrue();
+            index.get().refresh();
+
+            assertThat(index.get().search(frank.getId(), null, "regatta", 0, 10).getHits())
+                    .extracting(MessageSearchHitDto::getId)
+                    .containsExactly(kept.getId());
+        } finally {
+            index.get().stop();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest(properties = {
+        "app.sync.chunk-size=2",
+        "app.sync.overlap-ms=0"
+})
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageSyncServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageSyncService messageSyncService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @BeforeEach
+    void setUp() {
+        fixture.user("sync-alice");
+        fixture.user("sync-bob");
+        fixture.user("sync-carol");
+    }
+
+    @Test
+    void returnsNewAndChangedMessagesInChunks() throws InterruptedException {
+        Message old = fixture.send("sync-bob", "sync-alice", "before");
+        Thread.sleep(20);
+        LocalDateTime since = LocalDateTime.now();
+        Thread.sleep(20);
+
+        messageService.updateStatus(old.getId(), MessageStatus.READ);
+        Message received = fixture.send("sync-bob", "sync-alice", "one");
+        Message sent = fixture.send("sync-alice", "sync-bob", "two");
+        fixture.send("sync-bob", "sync-carol", "not for alice");
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<ChatMessageDto> synced = new ArrayList<>();
+        LocalDateTime cursor = messageSyncService.forEachChunk("sync-alice", since, chunk -> {
+            chunkSizes.add(chunk.size());
+            synced.addAll(chunk);
+        });
+
+        assertThat(synced).extracting(ChatMessageDto::getId)
+                .containsExactly(old.getId(), received.getId(), sent.getId());
+        assertThat(synced.get(0).getStatus()).isEqualTo(MessageStatus.READ);
+        assertThat(chunkSizes).containsExactly(2, 1);
+        assertThat(cursor).isAfter(since);
+    }
+
+    @Test
+    void lastMessageIdResolvesToThatMessagesTime() {
+        Message last = fixture.send("sync-bob", "sync-alice", "last seen");
+
+        assertThat(messageSyncService.resolveSince("sync-alice", null, last.getId()))
+                .isCloseTo(last.getTimestamp(), within(1, ChronoUnit.MILLIS));
+    }
+}
@@ -0,0 +1,154 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.MessageType;
+import com.nexus.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.messages.write-behind.enabled=true",
+        "app.messages.write-behind.flush-size=10",
+        "app.messages.write-behind.flush-interval-ms=50"
+})
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class MessageWriteBehindServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageIdAllocator messageIdAllocator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ConversationSummaryService conversationSummaryService;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private MessageExpiryService messageExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        fixture.user("wb-alice");
+        fixture.user("wb-bob");
+    }
+
+    @Test
+    void acceptedMessagesAreDurableOnceStopReturns() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            ids.add(fixture.send("wb-alice", "wb-bob", "hello " + i).getId());
+        }
+        assertThat(ids).doesNotContainNull().doesNotHaveDuplicates();
+
+        writeBehindService.stop();
+        try {
+            assertThat(writeBehindService.getPendingCount()).isZero();
+            assertThat(messageRepository.findAllById(ids)).hasSize(ids.size());
+        } finally {
+            writeBehindService.start();
+        }
+    }
+
+    @Test
+    void writesSynchronouslyWhileTheFlusherIsStopped() {
+        writeBehindService.stop();
+        try {
+            Message message = fixture.send("wb-alice", "wb-bob", "sync");
+            assertThat(messageRepository.findById(message.getId()))
+                    .hasValueSatisfying(saved -> assertThat(saved.getContent()).isEqualTo("sync"));
+        } finally {
+            writeBehindService.start();
+        }
+    }
+
+    @Test
+    void outageLongerThanTheRetryBudgetLosesNothing() {
+        // The database is unreachable for 20 attempts, against max-retries of 2
+        AtomicInteger failuresLeft = new AtomicInteger(20);
+        JdbcTemplate unreachable = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                           ParameterizedPreparedStatementSetter<T> pss) {
+                if (failuresLeft.getAndDecrement() > 0) {
+                    throw new TransientDataAccessResourceException("database unreachable");
+                }
+                return super.batchUpdate(sql, batchArgs, batchSize, pss);
+            }
+        };
+        MessageWriteBehindService outage = new MessageWriteBehindService(unreachable, transactionTemplate,
+                conversationSummaryService, recentMessageCache, messageSearchIndex, messageExpiryService,
+                true, 100, 10, 10, 250, 10, 2, 5000, 5000, "none");
+        outage.start();
+        try {
+            Message message = new Message();
+            message.setId(messageIdAllocator.nextId());
+            message.setSender(fixture.user("wb-alice"));
+            message.setRecipient(fixture.user("wb-bob"));
+            message.assignConversationKey();
+            message.setContent("during the outage");
+            message.setType(MessageType.TEXT);
+            message.setStatus(MessageStatus.SENT);
+            message.setTimestamp(LocalDateTime.now());
+            outage.enqueue(message);
+
+            outage.awaitPersisted(message.getId());
+
+            assertThat(failuresLeft.get()).isNegative();
+            assertThat(outage.getDroppedCount()).isZero();
+            assertThat(messageRepository.findById(message.getId())).isPresent();
+        } finally {
+            outage.stop();
+        }
+    }
+
+    @Test
+    void statusUpdatesWaitForTheRowToBeInserted() {
+        Message message = fixture.send("wb-alice", "wb-bob", "read me");
+
+        messageService.awaitPersisted(message.getId());
+        messageService.updateStatus(message.getId(), MessageStatus.READ);
+
+        assertThat(messageRepository.findById(message.getId()))
+                .hasValueSatisfying(saved -> assertThat(saved.getStatus()).isEqualTo(MessageStatus.READ));
+    }
+}
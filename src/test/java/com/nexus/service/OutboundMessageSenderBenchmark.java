@@ -0,0 +1,94 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.MessageType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocation and CPU per delivered message for a chat message sent to sender and recipient,
+ * converting per destination (before) versus encoding once (after). Run with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+class OutboundMessageSenderBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+    private static final List<String> USERS = List.of("alice", "bob");
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void encodeOnceAllocatesLessPerDeliveredMessage() {
+        MessageChannel discard = (message, timeout) -> true;
+        SimpMessagingTemplate template = new SimpMessagingTemplate(discard);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        template.setMessageConverter(converter);
+        OutboundMessageSender sender = new OutboundMessageSender(template);
+        ChatMessageDto payload = samplePayload();
+
+        Runnable before = () -> {
+            for (String user : USERS) {
+                template.convertAndSendToUser(user, "/queue/messages", payload);
+            }
+        };
+        Runnable after = () -> {
+            Message<?> encoded = sender.encode(payload);
+            for (String user : USERS) {
+                sender.sendToUser(user, "/queue/messages", encoded);
+            }
+        };
+
+        Result perConvert = measure("convertAndSendToUser per destination", before);
+        Result encodeOnce = measure("encode once, send to each destination", after);
+
+        assertThat(encodeOnce.bytesPerMessage()).isLessThan(perConvert.bytesPerMessage());
+    }
+
+    private Result measure(String name, Runnable fanOut) {
+        for (int i = 0; i < WARMUP; i++) {
+            fanOut.run();
+        }
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long cpu = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            fanOut.run();
+        }
+        long delivered = (long) ITERATIONS * USERS.size();
+        Result result = new Result(
+                (threads.getCurrentThreadAllocatedBytes() - bytes) / (double) delivered,
+                (threads.getCurrentThreadCpuTime() - cpu) / (double) delivered);
+        System.out.printf("%-40s %8.1f B/msg %8.1f ns cpu/msg%n", name, result.bytesPerMessage(), result.cpuNanosPerMessage());
+        return result;
+    }
+
+    private static ChatMessageDto samplePayload() {
+        ChatMessageDto dto = new ChatMessageDto();
+        dto.setId(123456L);
+        dto.setTempId("5f0c1a9e-7c1b-4c55-9a4e-0b7b2f1d9c11");
+        dto.setSenderUsername("alice");
+        dto.setRecipientUsername("bob");
+        dto.setContent("Are we still on for the release review at four? I pushed the last fixes.");
+        dto.setType(MessageType.TEXT);
+        dto.setStatus(MessageStatus.SENT);
+        dto.setTimestamp(LocalDateTime.now());
+        return dto;
+    }
+
+    private record Result(double bytesPerMessage, double cpuNanosPerMessage) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.PresenceDiffDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Flushes are driven by hand.
+@SpringBootTest(properties = {
+        "app.presence.flush-interval-ms=3600000",
+        "app.presence.offline-grace-ms=0",
+        "app.presence.max-watched=2"
+})
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class PresenceFanoutServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private PresenceFanoutService presenceFanoutService;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void sendsBatchedDiffsOnlyToContactsAndWatchers() {
+        fixture.user("fan-alice");
+        fixture.user("fan-bob");
+        fixture.user("fan-carol");
+        fixture.send("fan-bob", "fan-alice", "hi");
+        List<PresenceDiffDto> toAlice = capture("/user/fan-alice/queue/presence");
+
+        presenceRegistry.sessionOpened("fan-bob", "bob-1");
+        presenceRegistry.sessionOpened("fan-alice", "alice-1");
+        presenceFanoutService.flush();
+
+        assertThat(toAlice).hasSize(1);
+        assertThat(toAlice.get(0).getOnline()).containsExactly("fan-bob");
+
+        // Not a contact; a reconnect within one flush is not announced at all
+        presenceRegistry.sessionOpened("fan-carol", "carol-1");
+        presenceRegistry.sessionClosed("fan-bob", "bob-1");
+        presenceRegistry.sessionOpened("fan-bob", "bob-2");
+        presenceFanoutService.flush();
+
+        assertThat(toAlice).hasSize(1);
+
+        PresenceDiffDto watched = presenceFanoutService.watch("fan-alice", List.of("fan-carol"));
+        assertThat(watched.getOnline()).containsExactly("fan-carol");
+
+        // Bob and Carol fill the limit; Dave is not watched and not in the reply
+        PresenceDiffDto full = presenceFanoutService.watch("fan-alice", List.of("fan-carol", "fan-dave"));
+        assertThat(full.getOnline()).containsExactly("fan-carol");
+        assertThat(full.getOffline()).isEmpty();
+        assertThat(presenceFanoutService.watcherCount("fan-dave")).isZero();
+
+        presenceRegistry.sessionClosed("fan-carol", "carol-1");
+        presenceRegistry.sessionClosed("fan-bob", "bob-2");
+        presenceFanoutService.flush();
+
+        assertThat(toAlice).hasSize(2);
+        assertThat(toAlice.get(1).getOffline()).containsExactlyInAnyOrder("fan-bob", "fan-carol");
+
+        presenceRegistry.sessionClosed("fan-alice", "alice-1");
+        assertThat(presenceFanoutService.watcherCount("fan-bob")).isZero();
+        assertThat(presenceFanoutService.watcherCount("fan-carol")).isZero();
+    }
+
+    private List<PresenceDiffDto> capture(String destination) {
+        List<PresenceDiffDto> pushed = new CopyOnWriteArrayList<>();
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    try {
+                        pushed.add(objectMapper.readValue((byte[]) message.getPayload(), PresenceDiffDto.class));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return message;
+            }
+        });
+        return pushed;
+    }
+}
@@ -0,0 +1,34 @@
+package com.nexus.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PresenceRegistryTest {
+
+    private final List<PresenceRegistry.PresenceChange> changes = new CopyOnWriteArrayList<>();
+    private final PresenceRegistry registry = new PresenceRegistry(
+            event -> changes.add((PresenceRegistry.PresenceChange) event), new SimpleMeterRegistry());
+
+    @Test
+    void announcesOnlyTheFirstAndLastSessionOfAUser() {
+        registry.sessionOpened("alice", "tab-1");
+        registry.sessionOpened("alice", "tab-2");
+        registry.sessionOpened("alice", "tab-2");
+        registry.sessionClosed("alice", "tab-1");
+
+        assertThat(registry.isOnline("alice")).isTrue();
+        assertThat(registry.sessionCount("alice")).isEqualTo(1);
+
+        registry.sessionClosed("alice", "tab-2");
+        registry.sessionClosed("alice", "tab-2");
+
+        assertThat(registry.isOnline("alice")).isFalse();
+        assertThat(changes).extracting(PresenceRegistry.PresenceChange::online).containsExactly(true, false);
+        assertThat(changes.get(1).sequence()).isGreaterThan(changes.get(0).sequence());
+    }
+}
@@ -0,0 +1,71 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.ChatMessageDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.MessageStatus;
+import com.nexus.model.entity.User;
+import com.nexus.repository.RecordingStatementInspector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nexus.repository.RecordingStatementInspector")
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class RecentMessageCacheTest {
+
+    private static final PageRequest FIRST_PAGE = PageRequest.of(0, 10, Sort.by("timestamp").descending());
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Test
+    void firstPageIsServedFromMemoryAndFollowsWrites() throws IOException {
+        User alice = fixture.user("recent-alice");
+        User bob = fixture.user("recent-bob");
+        Message first = fixture.send("recent-alice", "recent-bob", "one");
+        Message second = fixture.send("recent-bob", "recent-alice", "two");
+
+        assertThat(messageService.getMessageHistory(alice.getId(), bob.getId(), FIRST_PAGE).getContent())
+                .extracting(ChatMessageDto::getId).containsExactly(second.getId(), first.getId());
+
+        Message third = fixture.send("recent-alice", "recent-bob", "three");
+        messageService.markConversationRead("recent-bob", "recent-alice", third.getId());
+        messageService.hardDeleteMessage(second.getId());
+
+        RecordingStatementInspector.clear();
+        Page<ChatMessageDto> page = messageService.getMessageHistory(bob.getId(), alice.getId(), FIRST_PAGE);
+
+        assertThat(RecordingStatementInspector.statements()).isEmpty();
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).extracting(ChatMessageDto::getId).containsExactly(third.getId(), first.getId());
+        assertThat(page.getContent()).extracting(ChatMessageDto::getStatus).containsOnly(MessageStatus.READ);
+
+        // Callers get copies; changing one does not change the cache.
+        page.getContent().get(0).setContent("changed");
+        assertThat(messageService.getMessageHistory(alice.getId(), bob.getId(), FIRST_PAGE).getContent().get(0).getContent())
+                .isEqualTo("three");
+    }
+
+    @Test
+    void staysOffWhenOtherNodesCanWrite() {
+        RecentMessageCache clustered = new RecentMessageCache(null, new SimpleMeterRegistry(), true, 50, 1 << 20, "redis");
+
+        assertThat(clustered.newest(1L, 2L, 10)).isNull();
+    }
+}
@@ -0,0 +1,89 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.model.dto.TypingStatusDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypingIndicatorServiceTest {
+
+    private static final long MIN_INTERVAL_MS = 100;
+    private static final long STOP_TIMEOUT_MS = 300;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<TypingStatusDto> toBob = new CopyOnWriteArrayList<>();
+    private final TypingIndicatorService service = new TypingIndicatorService(
+            new OutboundMessageSender(recordingTemplate()), new SimpleMeterRegistry(), MIN_INTERVAL_MS, STOP_TIMEOUT_MS);
+
+    @Test
+    void forwardsTransitionsAndSuppressesRefreshesWithinTheInterval() throws InterruptedException {
+        service.onTypingEvent("alice", typing(true));
+        service.onTypingEvent("alice", typing(true));
+        service.onTypingEvent("alice", typing(false));
+        service.sweep();
+
+        assertThat(toBob).extracting(TypingStatusDto::isTyping).containsExactly(true);
+
+        Thread.sleep(MIN_INTERVAL_MS + 20);
+        service.sweep();
+        service.sweep();
+
+        assertThat(toBob).extracting(TypingStatusDto::isTyping).containsExactly(true, false);
+    }
+
+    @Test
+    void reportsASenderThatGoesQuietAsStopped() throws InterruptedException {
+        service.onTypingEvent("alice", typing(true));
+        Thread.sleep(STOP_TIMEOUT_MS / 2);
+        service.onTypingEvent("alice", typing(true));
+        service.sweep();
+
+        assertThat(toBob).extracting(TypingStatusDto::isTyping).containsExactly(true);
+
+        Thread.sleep(STOP_TIMEOUT_MS + 20);
+        service.sweep();
+
+        assertThat(toBob).extracting(TypingStatusDto::isTyping).containsExactly(true, false);
+    }
+
+    @Test
+    void takesTheSenderFromThePrincipal() {
+        TypingStatusDto spoofed = new TypingStatusDto("mallory", "bob", true);
+
+        service.onTypingEvent("alice", spoofed);
+        service.onTypingEvent("bob", spoofed);
+
+        assertThat(toBob).singleElement().satisfies(status -> {
+            assertThat(status.getFromUsername()).isEqualTo("alice");
+            assertThat(status.isTyping()).isTrue();
+        });
+    }
+
+    private static TypingStatusDto typing(boolean typing) {
+        return new TypingStatusDto(null, "bob", typing);
+    }
+
+    private SimpMessagingTemplate recordingTemplate() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            if ("/user/bob/queue/status".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                try {
+                    toBob.add(objectMapper.readValue((byte[]) message.getPayload(), TypingStatusDto.class));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return true;
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        return template;
+    }
+}
@@ -0,0 +1,90 @@
+package com.nexus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexus.ChatFixture;
+import com.nexus.model.dto.UnreadCountsDto;
+import com.nexus.model.entity.Message;
+import com.nexus.model.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The scheduled push only runs at startup here; the test flushes by hand.
+@SpringBootTest(properties = "app.unread.push-interval-ms=3600000")
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class UnreadCountServiceTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private AbstractSubscribableChannel brokerChannel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void aBurstOfMessagesIsPushedAsOneUpdate() throws IOException {
+        User alice = fixture.user("unread-alice");
+        fixture.user("unread-bob");
+        List<UnreadCountsDto> pushed = capturePushes("/user/unread-alice/queue/unread");
+
+        Message last = null;
+        for (int i = 0; i < 3; i++) {
+            last = fixture.send("unread-bob", "unread-alice", "hello");
+        }
+        fixture.send("unread-alice", "unread-bob", "hello");
+        unreadCountService.flush();
+
+        assertThat(pushed).hasSize(1);
+        assertThat(pushed.get(0).getTotal()).isEqualTo(3);
+        assertThat(pushed.get(0).getConversations()).singleElement()
+                .satisfies(count -> assertThat(count.getPeerUsername()).isEqualTo("unread-bob"));
+        assertThat(unreadCountService.getUnreadCounts(alice.getId()).getTotal()).isEqualTo(3);
+
+        messageService.markConversationRead("unread-alice", "unread-bob", last.getId());
+        unreadCountService.flush();
+        unreadCountService.flush();
+
+        assertThat(pushed).hasSize(2);
+        assertThat(pushed.get(1).getConversations()).isEmpty();
+        assertThat(pushed.get(1).getTotal()).isZero();
+    }
+
+    private List<UnreadCountsDto> capturePushes(String destination) {
+        List<UnreadCountsDto> pushed = new CopyOnWriteArrayList<>();
+        brokerChannel.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, MessageChannel channel) {
+                if (destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    try {
+                        pushed.add(objectMapper.readValue((byte[]) message.getPayload(), UnreadCountsDto.class));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return message;
+            }
+        });
+        return pushed;
+    }
+}
@@ -0,0 +1,113 @@
+package com.nexus.service;
+
+import com.nexus.ChatFixture;
+import com.nexus.model.entity.Role;
+import com.nexus.model.entity.User;
+import com.nexus.repository.RecordingStatementInspector;
+import com.nexus.repository.RoleRepository;
+import com.nexus.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Locale;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nexus.repository.RecordingStatementInspector")
+@Import(ChatFixture.class)
+@ActiveProfiles("test")
+class UserIdentityCacheTest {
+
+    @Autowired
+    private ChatFixture fixture;
+
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Test
+    void sendingBetweenCachedUsersRunsNoUserLookups() {
+        User alice = fixture.user("identity-alice");
+        fixture.user("identity-bob");
+        userIdentityCache.evictAll();
+
+        RecordingStatementInspector.clear();
+        UserIdentityCache.UserIdentity identity = userIdentityCache.get("identity-alice");
+        assertThat(identity.id()).isEqualTo(alice.getId());
+        assertThat(identity.reference().getPassword()).isNull();
+        assertThat(userLookups()).isEqualTo(1);
+
+        userIdentityCache.get("identity-bob");
+        RecordingStatementInspector.clear();
+        for (int i = 0; i < 5; i++) {
+            fixture.send("identity-alice", "identity-bob", "hello " + i);
+            fixture.send("identity-bob", "identity-alice", "hi " + i);
+        }
+        assertThat(userIdentityCache.loadUserByUsername("identity-alice").getId()).isEqualTo(alice.getId());
+        assertThat(userLookups()).isZero();
+    }
+
+    @Test
+    void unknownUsersAreNotFoundEveryTime() {
+        assertThatThrownBy(() -> userIdentityCache.get("identity-nobody")).isInstanceOf(UsernameNotFoundException.class);
+        assertThatThrownBy(() -> userIdentityCache.get("identity-nobody")).isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    void updatingAUserEvictsItsEntry() {
+        fixture.user("identity-carol");
+        userIdentityCache.get("identity-carol");
+
+        User carol = userRepository.findByUsername("identity-carol").orElseThrow();
+        carol.setLastLoginIp("10.0.0.1".equals(carol.getLastLoginIp()) ? "10.0.0.2" : "10.0.0.1");
+        userRepository.save(carol);
+
+        RecordingStatementInspector.clear();
+        userIdentityCache.get("identity-carol");
+        assertThat(userLookups()).isEqualTo(1);
+    }
+
+    @Test
+    void updatingARoleEvictsEveryEntry() {
+        fixture.user("identity-dave");
+        Role role = roleRepository.findByName("IDENTITY_TEST").orElseGet(() -> {
+            Role created = new Role();
+            created.setName("IDENTITY_TEST");
+            return roleRepository.save(created);
+        });
+        User dave = userRepository.findByUsername("identity-dave").orElseThrow();
+        dave.setRoles(Set.of(role));
+        userRepository.save(dave);
+        userIdentityCache.evict("identity-dave");
+        assertThat(userIdentityCache.get("identity-dave").roles()).containsExactly("IDENTITY_TEST");
+
+        role.setName("IDENTITY_RENAMED");
+        roleRepository.save(role);
+        try {
+            RecordingStatementInspector.clear();
+            assertThat(userIdentityCache.get("identity-dave").roles()).containsExactly("IDENTITY_RENAMED");
+            assertThat(userLookups()).isEqualTo(1);
+        } finally {
+            role.setName("IDENTITY_TEST");
+            roleRepository.save(role);
+        }
+    }
+
+    private static long userLookups() {
+        return RecordingStatementInspector.statements().stream()
+                .filter(sql -> sql.toLowerCase(Locale.ROOT).contains("from users"))
+                .count();
+    }
+}
@@ -0,0 +1,76 @@
+package com.nexus.service;
+
+import com.nexus.cluster.ClusterRouter;
+import com.nexus.model.dto.UserSearchDto;
+import com.nexus.model.dto.UserSearchPageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTest {
+
+    private final PresenceRegistry presenceRegistry = new PresenceRegistry(event -> { }, new SimpleMeterRegistry());
+    private final ClusterRouter clusterRouter = mock(ClusterRouter.class);
+    private final UserSearchIndex index = new UserSearchIndex(null, presenceRegistry, clusterRouter, new SimpleMeterRegistry());
+
+    @Test
+    void ranksPrefixMatchesFirstAndOnlineUsersFirstWithinThem() {
+        index.add(1, "annabel");
+        index.add(2, "Anna");
+        index.add(3, "joanna");
+        index.add(4, "hannah");
+        index.add(5, "bob");
+        index.add(6, "sysadmin");
+        index.add(7, "ann");
+        index.add(7, "ann");
+        presenceRegistry.sessionOpened("Anna", "s1");
+        presenceRegistry.sessionOpened("joanna", "s2");
+
+        List<UserSearchDto> all = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            UserSearchPageDto page = index.search("ANN", 2, cursor);
+            all.addAll(page.getUsers());
+            pageSizes.add(page.getUsers().size());
+            hasMore = page.isHasMore();
+            cursor = page.getNextCursor();
+        }
+
+        assertThat(all).extracting(UserSearchDto::getUsername)
+                .containsExactly("Anna", "ann", "annabel", "joanna", "hannah");
+        assertThat(all).extracting(UserSearchDto::isOnline).containsExactly(true, false, false, true, false);
+        assertThat(pageSizes).containsExactly(2, 2, 1);
+        assertThat(index.size()).isEqualTo(6);
+    }
+
+    @Test
+    void shortTermsMatchPrefixesOnlyAndTheAdminIsNeverFound() {
+        index.add(1, "joanna");
+        index.add(2, "sysadmin");
+
+        assertThat(index.search("jo", 10, null).getUsers()).extracting(UserSearchDto::getUsername).containsExactly("joanna");
+        assertThat(index.search("an", 10, null).getUsers()).isEmpty();
+        assertThat(index.search("sysad", 10, null).getUsers()).isEmpty();
+        assertThat(index.search("  ", 10, null).getUsers()).isEmpty();
+    }
+
+    @Test
+    void usersConnectedToAnotherNodeRankAsOnline() {
+        index.add(1, "annabel");
+        index.add(2, "anna");
+        when(clusterRouter.hasRemoteSessions("annabel")).thenReturn(true);
+
+        assertThat(index.search("ann", 10, null).getUsers())
+                .extracting(UserSearchDto::getUsername, UserSearchDto::isOnline)
+                .containsExactly(tuple("annabel", true), tuple("anna", false));
+    }
+}